@@ -0,0 +1,377 @@
+package net.minetest.minetest;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * Read-only ZIP archive that is memory-mapped straight out of the APK.
+ *
+ * assets.zip is stored uncompressed inside the APK (see noCompress in
+ * build.gradle), so its bytes can be mapped through an AssetFileDescriptor
+ * and inflated in place without copying the archive anywhere first.
+ */
+public class AssetArchive implements Closeable {
+	private static final String TAG = "AssetArchive";
+
+	private static final int LOCAL_HEADER_SIG = 0x04034b50;
+	private static final int CENTRAL_HEADER_SIG = 0x02014b50;
+	private static final int END_HEADER_SIG = 0x06054b50;
+	private static final int LOCAL_HEADER_SIZE = 30;
+	private static final int CENTRAL_HEADER_SIZE = 46;
+	private static final int END_HEADER_SIZE = 22;
+	private static final String ALIASES_NAME = ".aliases";
+
+	public static final class Entry {
+		public final String name;
+		public final int method;
+		public final long crc;
+		public final long compressedSize;
+		public final long size;
+		private final long localHeaderOffset;
+
+		Entry(String name, int method, long crc, long compressedSize, long size,
+				long localHeaderOffset) {
+			this.name = name;
+			this.method = method;
+			this.crc = crc;
+			this.compressedSize = compressedSize;
+			this.size = size;
+			this.localHeaderOffset = localHeaderOffset;
+		}
+
+		public boolean isDirectory() {
+			return name.endsWith("/");
+		}
+	}
+
+	private final ByteBuffer buffer;
+	private final List<Entry> entries;
+	private final Map<String, Entry> entriesByName = new HashMap<>();
+	private final File tempFile;
+
+	private AssetArchive(ByteBuffer buffer, File tempFile) throws IOException {
+		this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+		this.tempFile = tempFile;
+		List<Entry> list = readCentralDirectory();
+		for (Entry entry : list)
+			entriesByName.put(entry.name, entry);
+		readAliases(list);
+		this.entries = Collections.unmodifiableList(list);
+	}
+
+	/**
+	 * Maps the named asset in place. If the asset was compressed by the APK
+	 * packager it cannot be mapped, in which case it is copied to a temporary
+	 * file in the cache directory first, which close() deletes.
+	 */
+	@NonNull
+	public static AssetArchive open(@NonNull Context context, @NonNull String name) throws IOException {
+		try (AssetFileDescriptor afd = context.getAssets().openFd(name);
+		     FileInputStream in = new FileInputStream(afd.getFileDescriptor())) {
+			ByteBuffer buffer = in.getChannel().map(FileChannel.MapMode.READ_ONLY,
+				afd.getStartOffset(), afd.getLength());
+			return new AssetArchive(buffer, null);
+		} catch (FileNotFoundException e) {
+			Log.w(TAG, name + " is compressed in the APK, copying it to the cache directory");
+		}
+
+		// Each open gets a copy of its own. Several threads may have the archive
+		// open at once, and rewriting a file that another one has mapped
+		// would crash it with SIGBUS.
+		File tempFile = File.createTempFile(name, null, Utils.getCacheDirectory(context));
+		try {
+			try (InputStream in = context.getAssets().open(name);
+			     OutputStream out = new FileOutputStream(tempFile)) {
+				int readLen;
+				byte[] readBuffer = new byte[16384];
+				while ((readLen = in.read(readBuffer)) != -1)
+					out.write(readBuffer, 0, readLen);
+			}
+			try (FileInputStream in = new FileInputStream(tempFile)) {
+				FileChannel channel = in.getChannel();
+				return new AssetArchive(channel.map(FileChannel.MapMode.READ_ONLY,
+					0, channel.size()), tempFile);
+			}
+		} catch (IOException e) {
+			if (!tempFile.delete())
+				Log.w(TAG, "Temporary copy of " + name + " cannot be deleted");
+			throw e;
+		}
+	}
+
+	@NonNull
+	public List<Entry> entries() {
+		return entries;
+	}
+
+	@Nullable
+	public Entry getEntry(@NonNull String name) {
+		return entriesByName.get(name);
+	}
+
+	/**
+	 * Opens a stream over the uncompressed contents of an entry. The CRC is
+	 * verified once the stream has been read to the end.
+	 * Safe to call from several threads at once.
+	 */
+	@NonNull
+	public InputStream openEntry(@NonNull Entry entry) throws IOException {
+		InputStream in = new ByteBufferInputStream(getData(entry));
+		if (entry.method == ZipEntry.STORED)
+			return new CheckedEntryStream(in, entry);
+		if (entry.method == ZipEntry.DEFLATED)
+			return new CheckedEntryStream(new EntryInflaterStream(in), entry);
+		throw new IOException("Unsupported compression method " + entry.method +
+			" for " + entry.name);
+	}
+
+	/**
+	 * Writes the contents of a STORED entry to the channel in bulk, straight
+	 * from the mapped archive. Unlike openEntry(), this skips the CRC check
+	 * when the archive is mapped from the APK, which is covered by its
+	 * signature. A copy in the cache directory is checked like openEntry().
+	 * Safe to call from several threads at once.
+	 */
+	public void copyStored(@NonNull Entry entry, @NonNull WritableByteChannel out) throws IOException {
+		if (entry.method != ZipEntry.STORED || entry.compressedSize != entry.size)
+			throw new IOException(entry.name + " is not stored");
+		ByteBuffer data = getData(entry);
+		if (tempFile == null) {
+			while (data.hasRemaining())
+				out.write(data);
+			return;
+		}
+
+		// CRC32.update(ByteBuffer) needs API 26
+		CRC32 crc = new CRC32();
+		byte[] chunk = new byte[65536];
+		while (data.hasRemaining()) {
+			int n = Math.min(chunk.length, data.remaining());
+			data.get(chunk, 0, n);
+			crc.update(chunk, 0, n);
+			ByteBuffer wrapped = ByteBuffer.wrap(chunk, 0, n);
+			while (wrapped.hasRemaining())
+				out.write(wrapped);
+		}
+		if (crc.getValue() != entry.crc)
+			throw new IOException("Corrupt ZIP entry " + entry.name);
+	}
+
+	@Override
+	public void close() {
+		if (tempFile != null && !tempFile.delete())
+			Log.w(TAG, "Temporary copy of the archive cannot be deleted");
+	}
+
+	@NonNull
+	private ByteBuffer getData(@NonNull Entry entry) throws IOException {
+		ByteBuffer buf = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		int header = checkedOffset(entry.localHeaderOffset, LOCAL_HEADER_SIZE);
+		if (buf.getInt(header) != LOCAL_HEADER_SIG)
+			throw new IOException("Bad local header for " + entry.name);
+		long dataOffset = entry.localHeaderOffset + LOCAL_HEADER_SIZE +
+			(buf.getShort(header + 26) & 0xffff) + (buf.getShort(header + 28) & 0xffff);
+		int start = checkedOffset(dataOffset, entry.compressedSize);
+		buf.limit(start + (int) entry.compressedSize);
+		buf.position(start);
+		return buf.slice();
+	}
+
+	@NonNull
+	private List<Entry> readCentralDirectory() throws IOException {
+		int end = findEndHeader();
+		int count = buffer.getShort(end + 10) & 0xffff;
+		long cdSize = buffer.getInt(end + 12) & 0xffffffffL;
+		int pos = checkedOffset(buffer.getInt(end + 16) & 0xffffffffL, cdSize);
+
+		Charset utf8 = Charset.forName("UTF-8");
+		List<Entry> result = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			checkedOffset(pos, CENTRAL_HEADER_SIZE);
+			if (buffer.getInt(pos) != CENTRAL_HEADER_SIG)
+				throw new IOException("Bad central directory header");
+			int method = buffer.getShort(pos + 10) & 0xffff;
+			long crc = buffer.getInt(pos + 16) & 0xffffffffL;
+			long compressedSize = buffer.getInt(pos + 20) & 0xffffffffL;
+			long size = buffer.getInt(pos + 24) & 0xffffffffL;
+			int nameLen = buffer.getShort(pos + 28) & 0xffff;
+			int extraLen = buffer.getShort(pos + 30) & 0xffff;
+			int commentLen = buffer.getShort(pos + 32) & 0xffff;
+			long localHeaderOffset = buffer.getInt(pos + 42) & 0xffffffffL;
+
+			byte[] name = new byte[nameLen];
+			ByteBuffer nameBuf = buffer.duplicate();
+			nameBuf.position(checkedOffset(pos + CENTRAL_HEADER_SIZE, nameLen));
+			nameBuf.get(name);
+
+			result.add(new Entry(new String(name, utf8), method, crc, compressedSize,
+				size, localHeaderOffset));
+			pos += CENTRAL_HEADER_SIZE + nameLen + extraLen + commentLen;
+		}
+		return result;
+	}
+
+	// Duplicate files are stored once, the build lists the others in .aliases
+	// (see zipAssets). They show up as entries that share the stored data.
+	// Each alias is still extracted as a file of its own: the engine looks
+	// assets up by path, and external storage has no hard links. A copy of the
+	// extracted original would write the same bytes, so it is not made.
+	private void readAliases(@NonNull List<Entry> list) throws IOException {
+		Entry aliasesEntry = entriesByName.remove(ALIASES_NAME);
+		if (aliasesEntry == null)
+			return;
+		list.remove(aliasesEntry);
+
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(openEntry(aliasesEntry), "UTF-8"))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				int tab = line.indexOf('\t');
+				Entry target = tab < 0 ? null : entriesByName.get(line.substring(tab + 1));
+				if (target == null)
+					throw new IOException("Bad alias: " + line);
+				Entry alias = new Entry(line.substring(0, tab), target.method, target.crc,
+					target.compressedSize, target.size, target.localHeaderOffset);
+				list.add(alias);
+				entriesByName.put(alias.name, alias);
+			}
+		}
+	}
+
+	private int findEndHeader() throws IOException {
+		int limit = Math.max(0, buffer.limit() - END_HEADER_SIZE - 0xffff);
+		for (int pos = buffer.limit() - END_HEADER_SIZE; pos >= limit; pos--) {
+			if (buffer.getInt(pos) == END_HEADER_SIG)
+				return pos;
+		}
+		throw new IOException("Not a ZIP archive");
+	}
+
+	private int checkedOffset(long offset, long length) throws IOException {
+		if (offset < 0 || length < 0 || offset + length > buffer.limit())
+			throw new IOException("Truncated ZIP archive");
+		return (int) offset;
+	}
+
+	private static class ByteBufferInputStream extends InputStream {
+		private final ByteBuffer buf;
+
+		ByteBufferInputStream(ByteBuffer buf) {
+			this.buf = buf;
+		}
+
+		@Override
+		public int read() {
+			return buf.hasRemaining() ? buf.get() & 0xff : -1;
+		}
+
+		@Override
+		public int read(@NonNull byte[] b, int off, int len) {
+			if (len == 0)
+				return 0;
+			if (!buf.hasRemaining())
+				return -1;
+			len = Math.min(len, buf.remaining());
+			buf.get(b, off, len);
+			return len;
+		}
+
+		@Override
+		public int available() {
+			return buf.remaining();
+		}
+	}
+
+	private static class EntryInflaterStream extends InflaterInputStream {
+		private boolean eof = false;
+
+		EntryInflaterStream(InputStream in) {
+			super(in, new Inflater(true), 16384);
+		}
+
+		// Raw deflate streams may need a trailing dummy byte, same as ZipFile does
+		@Override
+		protected void fill() throws IOException {
+			if (eof)
+				throw new EOFException("Unexpected end of ZIP entry");
+			len = in.read(buf, 0, buf.length);
+			if (len == -1) {
+				buf[0] = 0;
+				len = 1;
+				eof = true;
+			}
+			inf.setInput(buf, 0, len);
+		}
+
+		@Override
+		public void close() throws IOException {
+			super.close();
+			inf.end();
+		}
+	}
+
+	private static class CheckedEntryStream extends InputStream {
+		private final InputStream in;
+		private final Entry entry;
+		private final CRC32 crc = new CRC32();
+		private long total = 0;
+
+		CheckedEntryStream(InputStream in, Entry entry) {
+			this.in = in;
+			this.entry = entry;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+		}
+
+		@Override
+		public int read(@NonNull byte[] b, int off, int len) throws IOException {
+			int n = in.read(b, off, len);
+			if (n > 0) {
+				crc.update(b, off, n);
+				total += n;
+			} else if (n == -1 && (total != entry.size || crc.getValue() != entry.crc)) {
+				throw new IOException("Corrupt ZIP entry " + entry.name);
+			}
+			return n;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+}
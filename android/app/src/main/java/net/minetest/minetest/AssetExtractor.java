@@ -0,0 +1,278 @@
+package net.minetest.minetest;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.ZipEntry;
+
+/**
+ * Extracts the entries of an AssetArchive on a pool of worker threads,
+ * one thread per CPU core.
+ *
+ * Every file is written into the staging directory of an InstallJournal and
+ * only moved into place once complete, so the destination never contains
+ * half-written files. Entries recorded in the journal are skipped.
+ *
+ * Entries can be extracted in several passes (e.g. startup-critical files
+ * first). Other threads may ask for a single entry with waitFor(), which
+ * extracts it right away if no worker has picked it up yet.
+ */
+public class AssetExtractor {
+	public interface ProgressListener {
+		/**
+		 * Called from the extracting threads after each entry has been written.
+		 * Progress is measured in compressed bytes read from the archive.
+		 */
+		void onProgress(long done, long total);
+	}
+
+	private static final int PENDING = 0;
+	private static final int RUNNING = 1;
+	private static final int FINISHED = 2;
+	private static final int FAILED = 3;
+
+	private static final class Task {
+		final AssetArchive.Entry entry;
+		final AtomicInteger state = new AtomicInteger(PENDING);
+		// Set together with FAILED
+		private IOException error;
+
+		Task(AssetArchive.Entry entry) {
+			this.entry = entry;
+		}
+
+		synchronized void finish(@Nullable IOException error) {
+			this.error = error;
+			state.set(error == null ? FINISHED : FAILED);
+			notifyAll();
+		}
+
+		// Throws if the thread that extracted the entry failed
+		synchronized void await() throws IOException, InterruptedException {
+			while (state.get() == PENDING || state.get() == RUNNING)
+				wait();
+			if (error != null)
+				throw new IOException("Cannot extract " + entry.name, error);
+		}
+	}
+
+	private final AssetArchive archive;
+	private final File destination;
+	private final InstallJournal journal;
+	private final ProgressListener listener;
+	private final Map<String, Task> tasks = new HashMap<>();
+	// Tasks below each directory, keyed by its path with a trailing slash
+	private final Map<String, List<Task>> tasksByDir = new HashMap<>();
+	private final AtomicLong done = new AtomicLong(0);
+	private final AtomicReference<IOException> waiterError = new AtomicReference<>();
+	private final long total;
+
+	/**
+	 * @param entries all entries that this extractor may be asked to write.
+	 * Their directories are created right away.
+	 */
+	public AssetExtractor(@NonNull AssetArchive archive, @NonNull File destination,
+			@NonNull InstallJournal journal, @NonNull List<AssetArchive.Entry> entries,
+			@NonNull ProgressListener listener) {
+		this.archive = archive;
+		this.destination = destination;
+		this.journal = journal;
+		this.listener = listener;
+
+		// Directories are created up front, so that the workers never race on mkdirs()
+		Set<String> dirs = new HashSet<>();
+		for (AssetArchive.Entry entry : entries) {
+			if (entry.isDirectory()) {
+				dirs.add(entry.name);
+			} else {
+				Task task = new Task(entry);
+				tasks.put(entry.name, task);
+				int slash = entry.name.lastIndexOf('/');
+				if (slash > 0)
+					dirs.add(entry.name.substring(0, slash + 1));
+				for (slash = entry.name.indexOf('/'); slash > 0;
+						slash = entry.name.indexOf('/', slash + 1)) {
+					String dir = entry.name.substring(0, slash + 1);
+					List<Task> below = tasksByDir.get(dir);
+					if (below == null) {
+						below = new ArrayList<>();
+						tasksByDir.put(dir, below);
+					}
+					below.add(task);
+				}
+			}
+		}
+		for (String dir : dirs)
+			Utils.createDirs(destination, dir);
+
+		long bytes = 0;
+		for (Task task : tasks.values()) {
+			bytes += getWeight(task.entry);
+			if (journal.isCompleted(task.entry.name)) {
+				task.state.set(FINISHED);
+				done.addAndGet(getWeight(task.entry));
+			}
+		}
+		total = bytes;
+	}
+
+	/**
+	 * Extracts the given entries and returns once every worker has finished.
+	 * If any entry fails, the remaining ones are skipped and the first error
+	 * is rethrown.
+	 */
+	public void extract(@NonNull List<AssetArchive.Entry> entries) throws IOException {
+		List<Task> pass = new ArrayList<>(entries.size());
+		for (AssetArchive.Entry entry : entries) {
+			Task task = tasks.get(entry.name);
+			if (task != null)
+				pass.add(task);
+		}
+		if (pass.isEmpty())
+			return;
+
+		final AtomicBoolean failed = new AtomicBoolean(false);
+		int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), pass.size()));
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Void>> futures = new ArrayList<>(pass.size());
+			for (final Task task : pass) {
+				futures.add(pool.submit(() -> {
+					if (failed.get())
+						return null;
+					try {
+						runTask(task);
+					} catch (IOException e) {
+						failed.set(true);
+						throw e;
+					}
+					return null;
+				}));
+			}
+
+			IOException error = null;
+			for (Future<Void> future : futures) {
+				try {
+					future.get();
+				} catch (ExecutionException e) {
+					if (error == null) {
+						Throwable cause = e.getCause();
+						error = cause instanceof IOException ? (IOException) cause :
+							new IOException(cause);
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					failed.set(true);
+					if (error == null)
+						error = new IOException("Extraction interrupted");
+				}
+			}
+			if (error == null)
+				error = waiterError.get();
+			if (error != null)
+				throw error;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Blocks until the file at path (relative to the destination) is written.
+	 * If path names a directory, waits for every file below it instead.
+	 * Paths this extractor does not know about return immediately.
+	 */
+	public void waitFor(@NonNull String path) throws IOException, InterruptedException {
+		Task task = tasks.get(path);
+		if (task != null) {
+			waitForTask(task);
+			return;
+		}
+
+		List<Task> below = tasksByDir.get(path.endsWith("/") ? path : path + "/");
+		if (below == null)
+			return;
+		for (Task t : below)
+			waitForTask(t);
+	}
+
+	/**
+	 * Extracts a single entry on the calling thread, even if it has been
+	 * extracted already. Its parent directory must exist.
+	 */
+	public void extractEntry(@NonNull AssetArchive.Entry entry) throws IOException {
+		File tempFile = journal.createTempFile();
+		try {
+			try (FileOutputStream outputStream = new FileOutputStream(tempFile)) {
+				if (entry.method == ZipEntry.STORED) {
+					archive.copyStored(entry, outputStream.getChannel());
+				} else {
+					int readLen;
+					byte[] readBuffer = new byte[16384];
+					try (InputStream inputStream = archive.openEntry(entry)) {
+						while ((readLen = inputStream.read(readBuffer)) != -1) {
+							outputStream.write(readBuffer, 0, readLen);
+						}
+					}
+				}
+			}
+			journal.complete(entry.name, tempFile, new File(destination, entry.name));
+		} catch (IOException e) {
+			if (!tempFile.delete() && tempFile.exists())
+				Log.w("AssetExtractor", "Cannot delete " + tempFile.getName());
+			throw e;
+		}
+	}
+
+	private void waitForTask(@NonNull Task task) throws IOException, InterruptedException {
+		try {
+			if (runTask(task))
+				return;
+		} catch (IOException e) {
+			// Make sure that the install as a whole fails, too
+			waiterError.compareAndSet(null, e);
+			throw e;
+		}
+		task.await();
+	}
+
+	// Returns false if another thread has claimed the task already
+	private boolean runTask(@NonNull Task task) throws IOException {
+		if (!task.state.compareAndSet(PENDING, RUNNING))
+			return false;
+		try {
+			extractEntry(task.entry);
+		} catch (IOException | RuntimeException e) {
+			// Threads waiting for the entry must not go on as if it was there
+			task.finish(e instanceof IOException ? (IOException) e : new IOException(e));
+			throw e;
+		}
+		task.finish(null);
+		listener.onProgress(done.addAndGet(getWeight(task.entry)), total);
+		return true;
+	}
+
+	// Empty files still take some time to create
+	private static long getWeight(@NonNull AssetArchive.Entry entry) {
+		return Math.max(entry.compressedSize, 1);
+	}
+}
@@ -0,0 +1,146 @@
+package net.minetest.minetest;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Per-file content hashes of the asset tree, written by the prepareAssets
+ * Gradle task. Each line reads "<sha1> <size> <path>".
+ */
+public class AssetManifest {
+	public static final String FILE_NAME = ".manifest";
+
+	private final Map<String, String> hashes = new LinkedHashMap<>();
+
+	/**
+	 * Creates an empty manifest.
+	 */
+	public AssetManifest() {
+	}
+
+	@NonNull
+	public static AssetManifest read(@NonNull InputStream in) throws IOException {
+		AssetManifest manifest = new AssetManifest();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			String[] parts = line.split(" ", 3);
+			if (parts.length != 3 || !isNumber(parts[1]))
+				throw new IOException("Malformed asset manifest line: " + line);
+			manifest.hashes.put(parts[2], parts[0] + " " + parts[1]);
+		}
+		return manifest;
+	}
+
+	/**
+	 * Reads the manifest of an installed tree, or returns null if there is none.
+	 */
+	@Nullable
+	public static AssetManifest read(@NonNull File file) {
+		try (InputStream in = new FileInputStream(file)) {
+			return read(in);
+		} catch (FileNotFoundException e) {
+			return null;
+		} catch (IOException e) {
+			// A broken manifest just means that everything is reinstalled
+			return null;
+		}
+	}
+
+	/**
+	 * Writes the manifest into the destination of an install. It goes through
+	 * the journal like every other installed file.
+	 */
+	public void write(@NonNull InstallJournal journal, @NonNull File destination) throws IOException {
+		File tempFile = journal.createTempFile();
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<String, String> entry : hashes.entrySet())
+			sb.append(entry.getValue()).append(' ').append(entry.getKey()).append('\n');
+		try (OutputStream out = new FileOutputStream(tempFile)) {
+			out.write(sb.toString().getBytes("UTF-8"));
+		}
+		journal.complete(FILE_NAME, tempFile, new File(destination, FILE_NAME));
+	}
+
+	/**
+	 * Adds the file at path as listed in the other manifest.
+	 */
+	public void copy(@NonNull AssetManifest from, @NonNull String path) {
+		String hash = from.hashes.get(path);
+		if (hash != null)
+			hashes.put(path, hash);
+	}
+
+	public boolean contains(@NonNull String path) {
+		return hashes.containsKey(path);
+	}
+
+	@NonNull
+	public Set<String> getPaths() {
+		return Collections.unmodifiableSet(hashes.keySet());
+	}
+
+	/**
+	 * Returns the size of the file at path, or -1 if it is not listed.
+	 */
+	public long getSize(@NonNull String path) {
+		String hash = hashes.get(path);
+		return hash == null ? -1 : Long.parseLong(hash.substring(hash.indexOf(' ') + 1));
+	}
+
+	/**
+	 * Whether a file with the given SHA-1 (lower-case hex) and size is the one
+	 * listed at path.
+	 */
+	public boolean matches(@NonNull String path, @NonNull String sha1, long size) {
+		return (sha1 + " " + size).equals(hashes.get(path));
+	}
+
+	/**
+	 * Whether the file at path is new or has different contents than in
+	 * the other (installed) manifest.
+	 */
+	public boolean isChanged(@NonNull String path, @NonNull AssetManifest installed) {
+		String hash = hashes.get(path);
+		return hash == null || !hash.equals(installed.hashes.get(path));
+	}
+
+	/**
+	 * Lists the files of the other (installed) manifest that are gone from this one.
+	 */
+	@NonNull
+	public List<String> getRemoved(@NonNull AssetManifest installed) {
+		List<String> removed = new ArrayList<>();
+		for (String path : installed.hashes.keySet()) {
+			if (!hashes.containsKey(path))
+				removed.add(path);
+		}
+		return removed;
+	}
+
+	private static boolean isNumber(@NonNull String s) {
+		if (s.isEmpty())
+			return false;
+		for (int i = 0; i < s.length(); i++) {
+			if (!Character.isDigit(s.charAt(i)))
+				return false;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,177 @@
+package net.minetest.minetest;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Checks the installed asset tree against its manifest and re-extracts the
+ * files that are missing or damaged, e.g. by storage cleaners.
+ *
+ * Files are hashed on a pool with one thread per CPU core, all at background
+ * priority. Files of the wrong size are not hashed at all.
+ */
+public class AssetVerifier {
+	private static final String TAG = "AssetVerifier";
+	private static final String TAG_LAST_VERIFICATION = "lastAssetVerification";
+	private static final long INTERVAL_MS = 24 * 60 * 60 * 1000L;
+
+	/**
+	 * Checks the install on a background thread, unless the assets are still
+	 * being installed. The files are verified at most once a day.
+	 */
+	public static void startIfDue(@NonNull Context context) {
+		if (UnzipService.getIsRunning())
+			return;
+		final Context appContext = context.getApplicationContext();
+		SharedPreferences prefs = appContext.getSharedPreferences(MainActivity.SETTINGS, Context.MODE_PRIVATE);
+		long now = System.currentTimeMillis();
+		long last = prefs.getLong(TAG_LAST_VERIFICATION, 0);
+		final boolean due = last > now || now - last >= INTERVAL_MS;
+		if (due)
+			prefs.edit().putLong(TAG_LAST_VERIFICATION, now).apply();
+
+		Thread thread = new Thread(() -> {
+			Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+			// The startup check only reads the stored fingerprint. If the tree
+			// has been wiped, the next start installs the assets again.
+			if (!InstallFingerprint.isInstalled(appContext)) {
+				InstallFingerprint.clear(appContext);
+				return;
+			}
+			if (!due)
+				return;
+			try {
+				int repaired = verify(appContext);
+				if (repaired > 0)
+					Log.i(TAG, "Repaired " + repaired + " asset files");
+			} catch (IOException e) {
+				Log.e(TAG, "Asset verification failed: " + e.getLocalizedMessage());
+			}
+		}, "AssetVerifier");
+		thread.start();
+	}
+
+	/**
+	 * Verifies the installed assets and re-extracts the damaged files.
+	 * @return the number of files that were re-extracted
+	 */
+	public static int verify(@NonNull Context context) throws IOException {
+		File userDataDirectory = Utils.getUserDataDirectory(context);
+		AssetManifest installed = AssetManifest.read(new File(userDataDirectory, AssetManifest.FILE_NAME));
+		if (installed == null) {
+			Log.i(TAG, "No asset manifest, nothing to verify");
+			return 0;
+		}
+
+		List<String> damaged = findDamaged(userDataDirectory, installed);
+		if (damaged.isEmpty())
+			return 0;
+		Log.w(TAG, damaged.size() + " asset files are missing or damaged");
+
+		// A running install rewrites the tree anyway
+		if (!InstallJournal.LOCK.tryLock())
+			return 0;
+		try (AssetArchive archive = AssetArchive.open(context, "assets.zip")) {
+			return repair(archive, userDataDirectory, damaged);
+		} finally {
+			InstallJournal.LOCK.unlock();
+		}
+	}
+
+	/**
+	 * Lists the files listed in the manifest that are missing below root or
+	 * whose contents do not match.
+	 */
+	@NonNull
+	public static List<String> findDamaged(@NonNull File root, @NonNull AssetManifest manifest) throws IOException {
+		int threads = Runtime.getRuntime().availableProcessors();
+		ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> new Thread(() -> {
+			Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+			runnable.run();
+		}, "AssetVerifier worker"));
+		try {
+			List<String> paths = new ArrayList<>(manifest.getPaths());
+			List<Future<Boolean>> futures = new ArrayList<>(paths.size());
+			for (final String path : paths)
+				futures.add(pool.submit(() -> isDamaged(new File(root, path), path, manifest)));
+
+			List<String> damaged = new ArrayList<>();
+			for (int i = 0; i < paths.size(); i++) {
+				if (futures.get(i).get())
+					damaged.add(paths.get(i));
+			}
+			return damaged;
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Asset verification interrupted");
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private static boolean isDamaged(@NonNull File file, @NonNull String path,
+			@NonNull AssetManifest manifest) throws NoSuchAlgorithmException {
+		long size = file.length();
+		if (!file.isFile() || size != manifest.getSize(path))
+			return true;
+
+		MessageDigest digest = MessageDigest.getInstance("SHA-1");
+		byte[] buffer = new byte[65536];
+		try (InputStream in = new FileInputStream(file)) {
+			int len;
+			while ((len = in.read(buffer)) != -1)
+				digest.update(buffer, 0, len);
+		} catch (IOException e) {
+			return true;
+		}
+		return !manifest.matches(path, toHex(digest.digest()), size);
+	}
+
+	private static int repair(@NonNull AssetArchive archive, @NonNull File userDataDirectory,
+			@NonNull List<String> damaged) throws IOException {
+		List<AssetArchive.Entry> entries = new ArrayList<>(damaged.size());
+		for (String path : damaged) {
+			AssetArchive.Entry entry = archive.getEntry(path);
+			if (entry != null)
+				entries.add(entry);
+		}
+
+		// Goes through a journal like an install, so that an interrupted repair
+		// leaves no half-written files behind. The caller holds InstallJournal.LOCK.
+		try (InstallJournal journal = InstallJournal.open(userDataDirectory,
+				"verify " + InstallFingerprint.of(archive))) {
+			AssetExtractor extractor = new AssetExtractor(archive, userDataDirectory, journal,
+				entries, (done, total) -> {});
+			extractor.extract(entries);
+			journal.commit();
+		}
+		return entries.size();
+	}
+
+	@NonNull
+	private static String toHex(@NonNull byte[] bytes) {
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes)
+			sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		return sb.toString();
+	}
+}
@@ -0,0 +1,148 @@
+package net.minetest.minetest;
+
+import android.os.Build;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Recursive deletes that run in-process on a thread per CPU core, instead of
+ * forking /system/bin/rm.
+ *
+ * java.nio.file is only available from API 26, so the tree walk is done
+ * with java.io.File.
+ */
+public class FileOperations {
+	private static final String TAG = "FileOperations";
+	private static final String TRASH_DIR = ".trash";
+
+	/**
+	 * Deletes a file or directory tree. Subdirectories are deleted in parallel.
+	 * Symbolic links are removed, not followed.
+	 */
+	public static void delete(@NonNull File root) throws IOException {
+		if (!root.exists() && !isSymlink(root))
+			return;
+		run(new DeleteTask(root));
+	}
+
+	/**
+	 * Moves a tree into the trash directory below parent right away and deletes
+	 * it on a low-priority background thread. parent must be on the same file
+	 * system as root. If it cannot be moved, it is deleted before this returns,
+	 * so root is never deleted while something writes to it again.
+	 */
+	public static void deleteInBackground(@NonNull File root, @NonNull File parent) throws IOException {
+		File trash = Utils.createDirs(parent, TRASH_DIR);
+		File target = new File(trash, root.getName() + "-" + System.nanoTime());
+		if (!root.renameTo(target)) {
+			Log.w(TAG, "Cannot move " + root + " to the trash, deleting it right away");
+			delete(root);
+			return;
+		}
+		deleteOnThread(new File[] { target });
+	}
+
+	/**
+	 * Deletes whatever a killed process left behind in the trash directory
+	 * of deleteInBackground(). The directory itself is kept, since
+	 * deleteInBackground() may be moving something into it at the same time.
+	 */
+	public static void emptyTrash(@NonNull File parent) {
+		File[] children = new File(parent, TRASH_DIR).listFiles();
+		if (children != null && children.length > 0)
+			deleteOnThread(children);
+	}
+
+	private static void deleteOnThread(@NonNull File[] toDelete) {
+		Thread thread = new Thread(() -> {
+			Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+			for (File file : toDelete) {
+				try {
+					delete(file);
+				} catch (IOException e) {
+					Log.w(TAG, e.getLocalizedMessage());
+				}
+			}
+		}, "FileOperations delete");
+		thread.start();
+	}
+
+	private static void run(@NonNull RecursiveAction task) throws IOException {
+		ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		try {
+			pool.submit(task).get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof FileOperationException)
+				throw ((FileOperationException) cause).ioException;
+			throw new IOException(cause);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("File operation interrupted");
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private static boolean isSymlink(@NonNull File file) {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O)
+			return Files.isSymbolicLink(file.toPath());
+		try {
+			File parent = file.getParentFile();
+			File canonical = parent == null ? file : new File(parent.getCanonicalFile(), file.getName());
+			return !canonical.getCanonicalFile().equals(canonical.getAbsoluteFile());
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	// Carries IOExceptions through ForkJoinTask.invokeAll()
+	private static class FileOperationException extends RuntimeException {
+		final IOException ioException;
+
+		FileOperationException(IOException e) {
+			super(e);
+			ioException = e;
+		}
+	}
+
+	private static class DeleteTask extends RecursiveAction {
+		private final File file;
+
+		DeleteTask(File file) {
+			this.file = file;
+		}
+
+		@Override
+		protected void compute() {
+			File[] children = isSymlink(file) ? null : file.listFiles();
+			if (children != null) {
+				List<DeleteTask> subdirs = new ArrayList<>();
+				for (File child : children) {
+					if (child.isDirectory() && !isSymlink(child))
+						subdirs.add(new DeleteTask(child));
+					else
+						deleteFile(child);
+				}
+				invokeAll(subdirs);
+			}
+			deleteFile(file);
+		}
+
+		private void deleteFile(File f) {
+			if (!f.delete() && f.exists())
+				throw new FileOperationException(new IOException("Cannot delete " + f));
+		}
+	}
+}
@@ -25,6 +25,7 @@ import org.libsdl.app.SDLActivity;
 import android.app.Notification;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.Intent;
 import android.content.ActivityNotFoundException;
@@ -34,6 +35,7 @@ import android.os.Handler;
 import android.os.Looper;
 import android.os.Bundle;
 import android.text.InputType;
+import android.util.DisplayMetrics;
 import android.util.Log;
 import android.view.View;
 import android.view.ViewGroup;
@@ -48,9 +50,11 @@ import android.content.res.Configuration;
 import androidx.annotation.Keep;
 import androidx.appcompat.app.AlertDialog;
 import androidx.core.content.FileProvider;
+import androidx.core.graphics.Insets;
+import androidx.core.view.ViewCompat;
+import androidx.core.view.WindowInsetsCompat;
 
 import java.io.File;
-import java.util.Locale;
 import java.util.Objects;
 
 // Native code finds these methods by name (see porting_android.cpp).
@@ -58,20 +62,116 @@ import java.util.Objects;
 @Keep
 @SuppressWarnings("unused")
 public class GameActivity extends SDLActivity {
+	static final String NATIVE_LIBRARY = "luanti";
+
 	private HTMLViewManager mHtmlViewManager;
+	private ThermalMonitor mThermalMonitor;
+	private PerformanceHintSession mHintSession;
 
 	@Override
 	protected void onCreate(Bundle savedInstanceState) {
+		StartupTrace.begin("GameActivity.onCreate");
 		super.onCreate(savedInstanceState);
+
 		View content = SDLActivity.getContentView();
 		if (content instanceof ViewGroup) {
 			mHtmlViewManager = new HTMLViewManager(this, (ViewGroup) content);
 		}
+		if (content != null) {
+			ViewCompat.setOnApplyWindowInsetsListener(content, (view, insets) -> {
+				sendDisplayConfig(insets);
+				return ViewCompat.onApplyWindowInsets(view, insets);
+			});
+		}
+		// Before the engine starts, which reads it right away
+		sendDisplayConfig(null);
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && !SDLActivity.mBrokenLibraries)
+			mThermalMonitor = new ThermalMonitor(this);
+		AssetVerifier.startIfDue(this);
+		StartupTrace.end("GameActivity.onCreate");
+	}
+
+	@Override
+	protected void onResume() {
+		super.onResume();
+		if (mThermalMonitor != null)
+			mThermalMonitor.start();
+	}
+
+	@Override
+	protected void onPause() {
+		super.onPause();
+		if (mThermalMonitor != null)
+			mThermalMonitor.stop();
+	}
+
+	// Feeds the native thermal governor, see ThermalMonitor
+	static native void nativeOnThermalStateChanged(int status, float headroom);
+
+	@Override
+	public void onConfigurationChanged(Configuration newConfig) {
+		super.onConfigurationChanged(newConfig);
+		// Rotation, unfolding, multi-window resizes and keyboards
+		sendDisplayConfig(null);
+	}
+
+	private static native void nativeOnDisplayConfigChanged(float density, int width, int height,
+		int insetLeft, int insetTop, int insetRight, int insetBottom, boolean hasPhysicalKeyboard);
+
+	/**
+	 * Sends the display metrics and configuration to native code, which keeps
+	 * them in porting::DisplayConfig instead of asking for them.
+	 * @param insets the new window insets, or null for the current ones
+	 */
+	private void sendDisplayConfig(WindowInsetsCompat insets) {
+		if (SDLActivity.mBrokenLibraries)
+			return;
+		if (insets == null) {
+			View content = SDLActivity.getContentView();
+			insets = content != null ? ViewCompat.getRootWindowInsets(content) : null;
+		}
+		Insets safeInsets = insets != null ?
+			insets.getInsets(WindowInsetsCompat.Type.systemBars() | WindowInsetsCompat.Type.displayCutout()) :
+			Insets.NONE;
+		DisplayMetrics metrics = getResources().getDisplayMetrics();
+		boolean hasPhysicalKeyboard = getResources().getConfiguration().keyboard != Configuration.KEYBOARD_NOKEYS;
+		nativeOnDisplayConfigChanged(metrics.density, metrics.widthPixels, metrics.heightPixels,
+			safeInsets.left, safeInsets.top, safeInsets.right, safeInsets.bottom, hasPhysicalKeyboard);
+	}
+
+	// Queues the release of native memory, see porting::takeTrimMemoryStage()
+	private static native void nativeOnTrimMemory(int level);
+
+	@Override
+	public void onTrimMemory(int level) {
+		super.onTrimMemory(level);
+		if (mHtmlViewManager != null)
+			mHtmlViewManager.trimMemory(level);
+		if (!SDLActivity.mBrokenLibraries)
+			nativeOnTrimMemory(level);
+	}
+
+	@Override
+	public void onLowMemory() {
+		super.onLowMemory();
+		// Only sent by old Android versions, the engine ignores SDL's event
+		if (!SDLActivity.mBrokenLibraries)
+			nativeOnTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+	}
+
+	@Override
+	public void loadLibraries() {
+		StartupTrace.begin("loadLibraries");
+		try {
+			super.loadLibraries();
+		} finally {
+			StartupTrace.end("loadLibraries");
+		}
 	}
 
 	@Override
 	protected String getMainSharedObject() {
-		return getContext().getApplicationInfo().nativeLibraryDir + "/libluanti.so";
+		return getContext().getApplicationInfo().nativeLibraryDir + "/lib" + NATIVE_LIBRARY + ".so";
 	}
 
 	@Override
@@ -82,7 +182,7 @@ public class GameActivity extends SDLActivity {
 	@Override
 	protected String[] getLibraries() {
 		return new String[] {
-			"luanti"
+			NATIVE_LIBRARY
 		};
 	}
 
@@ -94,12 +194,20 @@ public class GameActivity extends SDLActivity {
 	enum DialogType { TEXT_INPUT, SELECTION_INPUT }
 	enum DialogState { DIALOG_SHOWN, DIALOG_INPUTTED, DIALOG_CANCELED }
 
-	private DialogType lastDialogType = DialogType.TEXT_INPUT;
-	private DialogState inputDialogState = DialogState.DIALOG_CANCELED;
-	private String messageReturnValue = "";
-	private int selectionReturnValue = 0;
+	// Limits how long onDestroy() waits for the settings to be written
+	private static final int SETTINGS_SAVE_TIMEOUT_MS = 1000;
 
+	// Only queues the save, the settings are written on a native thread
 	private native void saveSettings();
+	private native boolean waitForSettingsSaved(int timeoutMs);
+
+	// Queues the result of a closed input dialog for the engine, see
+	// porting::takeInputDialogResult()
+	private static native void nativeOnDialogResult(int type, int state, String text, int selection);
+
+	private static void sendDialogResult(DialogType type, DialogState state, String text, int selection) {
+		nativeOnDialogResult(type.ordinal(), state.ordinal(), text, selection);
+	}
 
 	@Override
 	protected void onStop() {
@@ -114,6 +222,14 @@ public class GameActivity extends SDLActivity {
 	protected void onDestroy() {
 		if (mHtmlViewManager != null)
 			mHtmlViewManager.shutdown();
+		closePerformanceHintSession();
+		// The process may be gone soon, so the last save is waited for here.
+		// Without a native thread, there are no settings to save.
+		if (!SDLActivity.mBrokenLibraries && mSDLThread != null) {
+			saveSettings();
+			if (!waitForSettingsSaved(SETTINGS_SAVE_TIMEOUT_MS))
+				Log.w("GameActivity", "Settings are still being saved");
+		}
 		super.onDestroy();
 	}
 
@@ -150,8 +266,6 @@ public class GameActivity extends SDLActivity {
 	}
 
 	private void showTextInputDialogUI(String hint, String current, int editType) {
-		lastDialogType = DialogType.TEXT_INPUT;
-		inputDialogState = DialogState.DIALOG_SHOWN;
 		final AlertDialog.Builder builder = new AlertDialog.Builder(this);
 		LinearLayout container = new LinearLayout(this);
 		container.setOrientation(LinearLayout.VERTICAL);
@@ -176,8 +290,8 @@ public class GameActivity extends SDLActivity {
 			// For multi-line, do not submit the text after pressing Enter key
 			if (keyCode == KeyEvent.KEYCODE_ENTER && editType != 1) {
 				imm.hideSoftInputFromWindow(editText.getWindowToken(), 0);
-				inputDialogState = DialogState.DIALOG_INPUTTED;
-				messageReturnValue = editText.getText().toString();
+				sendDialogResult(DialogType.TEXT_INPUT, DialogState.DIALOG_INPUTTED,
+					editText.getText().toString(), 0);
 				alertDialog.dismiss();
 				return true;
 			}
@@ -190,67 +304,31 @@ public class GameActivity extends SDLActivity {
 			doneButton.setText(R.string.ime_dialog_done);
 			doneButton.setOnClickListener((view -> {
 				imm.hideSoftInputFromWindow(editText.getWindowToken(), 0);
-				inputDialogState = DialogState.DIALOG_INPUTTED;
-				messageReturnValue = editText.getText().toString();
+				sendDialogResult(DialogType.TEXT_INPUT, DialogState.DIALOG_INPUTTED,
+					editText.getText().toString(), 0);
 				alertDialog.dismiss();
 			}));
 		}
 		alertDialog.setOnCancelListener(dialog -> {
 			getWindow().setSoftInputMode(WindowManager.LayoutParams.SOFT_INPUT_STATE_ALWAYS_HIDDEN);
-			inputDialogState = DialogState.DIALOG_CANCELED;
-			messageReturnValue = current;
+			sendDialogResult(DialogType.TEXT_INPUT, DialogState.DIALOG_CANCELED, current, 0);
 		});
 		alertDialog.show();
 		editText.requestFocusTryShow();
 	}
 
 	public void showSelectionInputDialogUI(String[] optionList, int selectedIdx) {
-		lastDialogType = DialogType.SELECTION_INPUT;
-		inputDialogState = DialogState.DIALOG_SHOWN;
 		final AlertDialog.Builder builder = new AlertDialog.Builder(this);
 		builder.setSingleChoiceItems(optionList, selectedIdx, (dialog, selection) -> {
-			inputDialogState = DialogState.DIALOG_INPUTTED;
-			selectionReturnValue = selection;
+			sendDialogResult(DialogType.SELECTION_INPUT, DialogState.DIALOG_INPUTTED, "", selection);
 			dialog.dismiss();
 		});
-		builder.setOnCancelListener(dialog -> {
-			inputDialogState = DialogState.DIALOG_CANCELED;
-			selectionReturnValue = selectedIdx;
-		});
+		builder.setOnCancelListener(dialog ->
+			sendDialogResult(DialogType.SELECTION_INPUT, DialogState.DIALOG_CANCELED, "", selectedIdx));
 		AlertDialog alertDialog = builder.create();
 		alertDialog.show();
 	}
 
-	public int getLastDialogType() {
-		return lastDialogType.ordinal();
-	}
-
-	public int getInputDialogState() {
-		return inputDialogState.ordinal();
-	}
-
-	public String getDialogMessage() {
-		inputDialogState = DialogState.DIALOG_CANCELED;
-		return messageReturnValue;
-	}
-
-	public int getDialogSelection() {
-		inputDialogState = DialogState.DIALOG_CANCELED;
-		return selectionReturnValue;
-	}
-
-	public float getDensity() {
-		return getResources().getDisplayMetrics().density;
-	}
-
-	public int getDisplayHeight() {
-		return getResources().getDisplayMetrics().heightPixels;
-	}
-
-	public int getDisplayWidth() {
-		return getResources().getDisplayMetrics().widthPixels;
-	}
-
 	public void openURI(String uri) {
 		Intent browserIntent = new Intent(Intent.ACTION_VIEW, Uri.parse(uri));
 		try {
@@ -264,6 +342,52 @@ public class GameActivity extends SDLActivity {
 		return Utils.getUserDataDirectory(this).getAbsolutePath();
 	}
 
+	/**
+	 * Adds a mark to the startup timeline, see StartupTrace.
+	 * @param last whether this is the first frame, which ends the timeline
+	 */
+	public void traceStartup(String phase, boolean last) {
+		if (last)
+			StartupTrace.finish(this, phase);
+		else
+			StartupTrace.mark(phase);
+	}
+
+	/**
+	 * Creates the performance hint session that frame times are reported to,
+	 * see PerformanceHintSession. Called on the native main thread.
+	 * @return false if the device does not support it
+	 */
+	public boolean createPerformanceHintSession(int[] threadIds, long targetNanos) {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+			synchronized (this) {
+				mHintSession = PerformanceHintSession.create(this, threadIds, targetNanos);
+				return mHintSession != null;
+			}
+		}
+		return false;
+	}
+
+	/** Called by the native main thread after every frame. */
+	public void reportFrameDuration(long actualNanos, long targetNanos) {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+			synchronized (this) {
+				if (mHintSession != null)
+					mHintSession.report(actualNanos, targetNanos);
+			}
+		}
+	}
+
+	private void closePerformanceHintSession() {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+			synchronized (this) {
+				if (mHintSession != null)
+					mHintSession.close();
+				mHintSession = null;
+			}
+		}
+	}
+
 	public String getCachePath() {
 		return Utils.getCacheDirectory(this).getAbsolutePath();
 	}
@@ -287,31 +411,15 @@ public class GameActivity extends SDLActivity {
 	}
 
 	public String getLanguage() {
-		String langCode = Locale.getDefault().getLanguage();
-
-		// getLanguage() still uses old language codes to preserve compatibility.
-		// List of code changes in ISO 639-2:
-		// https://www.loc.gov/standards/iso639-2/php/code_changes.php
-		switch (langCode) {
-			case "in":
-				langCode = "id"; // Indonesian
-				break;
-			case "iw":
-				langCode = "he"; // Hebrew
-				break;
-			case "ji":
-				langCode = "yi"; // Yiddish
-				break;
-			case "jw":
-				langCode = "jv"; // Javanese
-				break;
-		}
+		return Utils.getLanguage();
+	}
 
-		return langCode;
+	public boolean waitForAsset(String path) {
+		return UnzipService.waitForAsset(path);
 	}
 
-	public boolean hasPhysicalKeyboard() {
-		return getContext().getResources().getConfiguration().keyboard != Configuration.KEYBOARD_NOKEYS;
+	public boolean installLocale(String language) {
+		return LocaleInstaller.install(this, language);
 	}
 
 	// TODO: share code with UnzipService.createNotification
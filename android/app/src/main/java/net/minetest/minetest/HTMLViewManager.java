@@ -2,6 +2,7 @@ package net.minetest.minetest;
 
 import android.graphics.Color;
 import android.os.Build;
+import android.util.Log;
 import android.view.Gravity;
 import android.view.View;
 import android.view.ViewGroup;
@@ -55,6 +56,28 @@ public class HTMLViewManager {
 		});
 	}
 
+	/**
+	 * Pauses the hidden WebViews and drops the in-memory cache of WebView
+	 * resources. They resume when they are displayed again.
+	 * @param level trim level passed to GameActivity.onTrimMemory()
+	 */
+	public void trimMemory(int level) {
+		activity.runOnUiThread(() -> {
+			int paused = 0;
+			for (WebView wv : webViews.values()) {
+				if (wv.getVisibility() == View.VISIBLE)
+					continue;
+				wv.onPause();
+				paused++;
+			}
+			if (paused == 0)
+				return;
+			// The cache is shared by all WebViews, files on disk are kept
+			webViews.values().iterator().next().clearCache(false);
+			Log.i("HTMLViewManager", "Trim level " + level + ": paused " + paused + " hidden WebViews");
+		});
+	}
+
 	public void htmlview_run(String id, String html) {
 		activity.runOnUiThread(() -> {
 			WebView wv = getOrCreate(id);
@@ -89,6 +112,8 @@ public class HTMLViewManager {
 			wv.setVisibility(visible ? View.VISIBLE : View.GONE);
 			if (!visible)
 				return;
+			// May have been paused by trimMemory()
+			wv.onResume();
 
 			int rootW = root.getWidth();
 			int rootH = root.getHeight();
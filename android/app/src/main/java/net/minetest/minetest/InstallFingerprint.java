@@ -0,0 +1,114 @@
+package net.minetest.minetest;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+/**
+ * Compact record of the installed assets (version code and manifest CRC),
+ * kept in internal storage.
+ *
+ * The startup check compares it with the values of this build, which takes
+ * one small read. isInstalled() also checks the archive and the installed
+ * tree, so it belongs on a background thread. The installer removes the
+ * fingerprint before it changes anything and writes it once the install is
+ * committed.
+ */
+public class InstallFingerprint {
+	private static final String TAG = "InstallFingerprint";
+	private static final String FILE_NAME = "install-fingerprint";
+	// Always installed. Storage cleaners and users may wipe the external files
+	// directory behind the fingerprint's back.
+	private static final String[] REQUIRED_PATHS = {
+		AssetManifest.FILE_NAME, "builtin", "fonts", "textures/base/pack"
+	};
+
+	/**
+	 * Returns the fingerprint that an install of the archive results in.
+	 */
+	@NonNull
+	public static String of(@NonNull AssetArchive archive) {
+		AssetArchive.Entry manifest = archive.getEntry(AssetManifest.FILE_NAME);
+		return BuildConfig.VERSION_CODE + " " +
+			(manifest != null ? Long.toHexString(manifest.crc) : "-");
+	}
+
+	/**
+	 * Whether the installed assets are those of this build, as far as the
+	 * stored fingerprint knows. Cheap enough for the UI thread.
+	 */
+	public static boolean isCurrent(@NonNull Context context) {
+		// Written by the build from the same manifest that goes into assets.zip
+		String expected = BuildConfig.VERSION_CODE + " " + BuildConfig.ASSET_MANIFEST_CRC;
+		return expected.equals(read(context));
+	}
+
+	/**
+	 * Whether the installed assets are those of the archive in this APK and
+	 * have not been wiped since. Opens the archive and stats the external
+	 * storage, so it must not be called on the UI thread.
+	 */
+	@WorkerThread
+	public static boolean isInstalled(@NonNull Context context) {
+		String fingerprint = read(context);
+		if (fingerprint == null)
+			return false;
+
+		File userDataDirectory = Utils.getUserDataDirectory(context);
+		for (String path : REQUIRED_PATHS) {
+			if (!new File(userDataDirectory, path).exists()) {
+				Log.w(TAG, path + " is missing, the assets need to be installed again");
+				return false;
+			}
+		}
+
+		try (AssetArchive archive = AssetArchive.open(context, "assets.zip")) {
+			return fingerprint.equals(of(archive));
+		} catch (IOException e) {
+			Log.e(TAG, "Cannot read assets.zip: " + e.getLocalizedMessage());
+			return false;
+		}
+	}
+
+	@Nullable
+	public static String read(@NonNull Context context) {
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(getFile(context)), "UTF-8"))) {
+			return reader.readLine();
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	public static void write(@NonNull Context context, @NonNull String fingerprint) throws IOException {
+		File file = getFile(context);
+		File tempFile = new File(file.getPath() + ".tmp");
+		try (FileOutputStream out = new FileOutputStream(tempFile)) {
+			out.write((fingerprint + "\n").getBytes("UTF-8"));
+			out.getFD().sync();
+		}
+		if (!tempFile.renameTo(file))
+			throw new IOException("Cannot write the install fingerprint");
+	}
+
+	public static void clear(@NonNull Context context) {
+		File file = getFile(context);
+		if (!file.delete() && file.exists())
+			Log.w(TAG, "Install fingerprint cannot be deleted");
+	}
+
+	@NonNull
+	private static File getFile(@NonNull Context context) {
+		return new File(context.getFilesDir(), FILE_NAME);
+	}
+}
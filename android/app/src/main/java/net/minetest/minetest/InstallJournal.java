@@ -0,0 +1,185 @@
+package net.minetest.minetest;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Staging directory and progress journal of an asset install.
+ *
+ * Files are extracted into the staging directory and renamed into place once
+ * complete, then recorded in the journal. If the install is interrupted, the
+ * next attempt at the same archive skips everything in the journal. The
+ * journal is only removed once the install has been committed, so its
+ * presence marks an incomplete install.
+ *
+ * Each install id (full installs, locale installs, repairs) has a journal of
+ * its own, so one kind of install does not discard the record of another
+ * that was interrupted.
+ */
+public class InstallJournal implements Closeable {
+	private static final String TAG = "InstallJournal";
+	public static final String STAGING_DIR = ".install";
+	private static final String FILE_PREFIX = "journal-";
+	private static final String TEMP_PREFIX = "tmp-";
+
+	/**
+	 * Held by every install for its whole duration, since they share the
+	 * staging directory. UnzipService waits for it, the installs that run
+	 * while the game is running (locales, repairs) give up if it is taken.
+	 */
+	public static final ReentrantLock LOCK = new ReentrantLock();
+
+	private final File stagingDir;
+	private final File file;
+	private final Set<String> completed = new HashSet<>();
+	private final OutputStream out;
+	private final boolean resumed;
+	private int tempCounter = 0;
+
+	private InstallJournal(@NonNull File stagingDir, @NonNull String id) throws IOException {
+		this.stagingDir = stagingDir;
+		this.file = new File(stagingDir, FILE_PREFIX + id.replaceAll("[^A-Za-z0-9._-]", "_"));
+
+		boolean resume = false;
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(new FileInputStream(file), "UTF-8"))) {
+			if (id.equals(reader.readLine())) {
+				resume = true;
+				String line;
+				while ((line = reader.readLine()) != null)
+					completed.add(line);
+			}
+		} catch (FileNotFoundException e) {
+			// Nothing to resume
+		}
+
+		// Partially written files are of no use
+		deleteTempFiles();
+		resumed = resume;
+
+		if (resume) {
+			Log.i(TAG, "Resuming install, " + completed.size() + " files done already");
+			out = new FileOutputStream(file, true);
+		} else {
+			completed.clear();
+			Utils.createDirs(stagingDir.getParentFile(), stagingDir.getName());
+			out = new FileOutputStream(file);
+			out.write((id + "\n").getBytes("UTF-8"));
+		}
+	}
+
+	/**
+	 * Opens the journal of the install identified by id, resuming it if an
+	 * earlier attempt at the same install was interrupted.
+	 */
+	@NonNull
+	public static InstallJournal open(@NonNull File userDataDirectory, @NonNull String id) throws IOException {
+		return new InstallJournal(new File(userDataDirectory, STAGING_DIR), id);
+	}
+
+	/**
+	 * Whether an install into the directory has been started but not committed.
+	 */
+	public static boolean isPending(@NonNull File userDataDirectory) {
+		return listJournals(new File(userDataDirectory, STAGING_DIR)).length > 0;
+	}
+
+	/**
+	 * Removes the journals of all other installs. Called once a full install
+	 * has been committed, which replaces what they were doing.
+	 */
+	public static void discardAll(@NonNull File userDataDirectory) {
+		File stagingDir = new File(userDataDirectory, STAGING_DIR);
+		for (File f : listJournals(stagingDir)) {
+			if (!f.delete())
+				Log.w(TAG, "Cannot delete " + f.getName());
+		}
+		if (stagingDir.exists() && !stagingDir.delete())
+			Log.w(TAG, "Staging directory cannot be deleted");
+	}
+
+	@NonNull
+	private static File[] listJournals(@NonNull File stagingDir) {
+		File[] files = stagingDir.listFiles((dir, name) -> name.startsWith(FILE_PREFIX));
+		return files != null ? files : new File[0];
+	}
+
+	/**
+	 * Whether this continues an earlier, interrupted attempt.
+	 */
+	public boolean isResumed() {
+		return resumed;
+	}
+
+	public synchronized boolean isCompleted(@NonNull String name) {
+		return completed.contains(name);
+	}
+
+	/**
+	 * Returns a new file in the staging directory for a file to be written to.
+	 */
+	@NonNull
+	public synchronized File createTempFile() {
+		return new File(stagingDir, TEMP_PREFIX + (tempCounter++));
+	}
+
+	/**
+	 * Moves a fully written temporary file into place and records it as done.
+	 */
+	public void complete(@NonNull String name, @NonNull File tempFile, @NonNull File target) throws IOException {
+		if (!tempFile.renameTo(target)) {
+			// renameTo() does not replace directories or may fail on some file systems
+			if (!target.delete() || !tempFile.renameTo(target))
+				throw new IOException("Cannot move " + name + " into place");
+		}
+		synchronized (this) {
+			// Unbuffered, so a killed process loses at most this line
+			out.write((name + "\n").getBytes("UTF-8"));
+			completed.add(name);
+		}
+	}
+
+	/**
+	 * Marks the install as complete and removes the staging directory, unless
+	 * other installs have pending journals in it.
+	 */
+	public void commit() throws IOException {
+		close();
+		if (!file.delete())
+			throw new IOException("Cannot commit the install journal");
+		deleteTempFiles();
+		if (listJournals(stagingDir).length == 0 && !stagingDir.delete())
+			Log.w(TAG, "Staging directory cannot be deleted");
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+
+	// Installs hold LOCK, so any temporary file is left over from this one
+	// or from one that was killed
+	private void deleteTempFiles() {
+		File[] files = stagingDir.listFiles((dir, name) -> name.startsWith(TEMP_PREFIX));
+		if (files == null)
+			return;
+		for (File f : files) {
+			if (!f.delete())
+				Log.w(TAG, "Cannot delete " + f.getName());
+		}
+	}
+}
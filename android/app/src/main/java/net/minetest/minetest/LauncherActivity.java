@@ -0,0 +1,39 @@
+package net.minetest.minetest;
+
+import android.app.Activity;
+import android.content.Intent;
+import android.os.Build;
+import android.os.Bundle;
+
+/**
+ * Entry point of the launcher icon. It has no window (Theme.NoDisplay) and
+ * only decides where to go: launches with installed assets go straight on to
+ * GameActivity, whose window background serves as the splash screen until SDL
+ * draws, everything else goes through MainActivity and the installer.
+ *
+ * GameActivity cannot be the entry point itself, since SDLActivity starts the
+ * native side in onCreate() and cannot back out of it again.
+ */
+public class LauncherActivity extends Activity {
+	@Override
+	protected void onCreate(Bundle savedInstanceState) {
+		StartupTrace.begin("LauncherActivity.onCreate");
+		super.onCreate(savedInstanceState);
+
+		Intent intent;
+		if (UnzipService.getIsReady() ||
+				(!UnzipService.getIsRunning() && InstallFingerprint.isCurrent(this))) {
+			// GameActivity posts its notification on this channel
+			if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O)
+				MainActivity.createNotificationChannel(this);
+			intent = new Intent(this, GameActivity.class);
+		} else {
+			intent = new Intent(this, MainActivity.class);
+		}
+		intent.setFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
+		startActivity(intent);
+		// Theme.NoDisplay requires finishing before onResume()
+		finish();
+		StartupTrace.end("LauncherActivity.onCreate");
+	}
+}
@@ -0,0 +1,157 @@
+package net.minetest.minetest;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Installs translations on demand.
+ *
+ * UnzipService only installs the locale of the system language, plus the
+ * ones that were installed before. Other languages are extracted from the
+ * APK once they are selected in the settings.
+ */
+public class LocaleInstaller {
+	private static final String TAG = "LocaleInstaller";
+	private static final String LOCALE_DIR = "locale/";
+
+	/**
+	 * Whether the archive entry at name belongs to the translations of
+	 * language. A language without a region includes all of its regions.
+	 */
+	public static boolean isLocaleOf(@NonNull String name, @NonNull String language) {
+		return name.startsWith(LOCALE_DIR + language + "/") ||
+			name.startsWith(LOCALE_DIR + language + "_");
+	}
+
+	/**
+	 * Whether name is a translation that is not in any of the languages.
+	 */
+	public static boolean isOtherLocale(@NonNull String name, @NonNull Collection<String> languages) {
+		if (!name.startsWith(LOCALE_DIR))
+			return false;
+		for (String language : languages) {
+			if (isLocaleOf(name, language))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Lists the languages that the manifest has translations of.
+	 */
+	@NonNull
+	public static Set<String> getLanguages(@NonNull AssetManifest manifest) {
+		Set<String> languages = new HashSet<>();
+		for (String path : manifest.getPaths()) {
+			if (!path.startsWith(LOCALE_DIR))
+				continue;
+			int end = path.indexOf('/', LOCALE_DIR.length());
+			if (end > LOCALE_DIR.length())
+				languages.add(path.substring(LOCALE_DIR.length(), end));
+		}
+		return languages;
+	}
+
+	/**
+	 * Whether this build has translations of language, known without I/O.
+	 */
+	public static boolean hasTranslations(@NonNull String language) {
+		for (String translated : BuildConfig.TRANSLATIONS) {
+			if (translated.equals(language) || translated.startsWith(language + "_"))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Installs the translations of language if they are not installed yet.
+	 * Blocks until they are written.
+	 * @param language a language code as in the "language" setting. An empty
+	 * string stands for the current system language, which may have changed
+	 * since the assets were installed.
+	 * @return false if the translations cannot be installed right now
+	 */
+	public static boolean install(@NonNull Context context, @NonNull String language) {
+		if (language.isEmpty())
+			language = Utils.getLanguage();
+		// Called on every start, so the common cases must not open the archive
+		if (!hasTranslations(language))
+			return true;
+
+		File userDataDirectory = Utils.getUserDataDirectory(context);
+		// The running installer may have it queued
+		UnzipService.waitForAsset(new File(userDataDirectory, LOCALE_DIR + language).getAbsolutePath());
+		File manifestFile = new File(userDataDirectory, AssetManifest.FILE_NAME);
+		AssetManifest installed = AssetManifest.read(manifestFile);
+		// Installs without a manifest have every language
+		if (installed == null || isInstalled(installed, language))
+			return true;
+
+		if (!InstallJournal.LOCK.tryLock()) {
+			Log.w(TAG, "Assets are being installed, cannot add language " + language);
+			return false;
+		}
+		try {
+			// May have changed while the lock was not held
+			installed = AssetManifest.read(manifestFile);
+			if (installed == null)
+				return true;
+
+			try (AssetArchive archive = AssetArchive.open(context, "assets.zip")) {
+				AssetArchive.Entry manifestEntry = archive.getEntry(AssetManifest.FILE_NAME);
+				if (manifestEntry == null)
+					return true;
+				AssetManifest manifest;
+				try (InputStream in = archive.openEntry(manifestEntry)) {
+					manifest = AssetManifest.read(in);
+				}
+
+				List<AssetArchive.Entry> entries = new ArrayList<>();
+				for (AssetArchive.Entry entry : archive.entries()) {
+					if (!entry.isDirectory() && isLocaleOf(entry.name, language) &&
+							!installed.contains(entry.name))
+						entries.add(entry);
+				}
+				if (entries.isEmpty())
+					return true;
+
+				try (InstallJournal journal = InstallJournal.open(userDataDirectory, "locale " + language)) {
+					AssetExtractor extractor = new AssetExtractor(archive, userDataDirectory, journal,
+						entries, (done, total) -> {});
+					extractor.extract(entries);
+					// Keeps the language up to date on upgrades
+					for (AssetArchive.Entry entry : entries)
+						installed.copy(manifest, entry.name);
+					installed.write(journal, userDataDirectory);
+					journal.commit();
+				}
+				Log.i(TAG, "Installed " + entries.size() + " translation files for " + language);
+				return true;
+			} catch (IOException e) {
+				Log.e(TAG, "Cannot install language " + language + ": " + e.getLocalizedMessage());
+				return false;
+			}
+		} finally {
+			InstallJournal.LOCK.unlock();
+		}
+	}
+
+	private static boolean isInstalled(@NonNull AssetManifest installed, @NonNull String language) {
+		for (String path : installed.getPaths()) {
+			if (isLocaleOf(path, language))
+				return true;
+		}
+		return false;
+	}
+}
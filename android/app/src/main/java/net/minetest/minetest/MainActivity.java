@@ -20,25 +20,27 @@ with this program; if not, write to the Free Software Foundation, Inc.,
 
 package net.minetest.minetest;
 
-import android.annotation.SuppressLint;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
-import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.content.SharedPreferences;
 import android.os.Build;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.View;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.RequiresApi;
-import androidx.annotation.StringRes;
 import androidx.appcompat.app.AppCompatActivity;
 
+import org.libsdl.app.SDL;
+
+import java.io.IOException;
+
 import static net.minetest.minetest.UnzipService.*;
 
 public class MainActivity extends AppCompatActivity {
@@ -47,105 +49,144 @@ public class MainActivity extends AppCompatActivity {
 	public static final int NOTIFICATION_ID_GAME = 2;
 
 	private final static int versionCode = BuildConfig.VERSION_CODE;
-	private static final String SETTINGS = "MinetestSettings";
-	private static final String TAG_VERSION_CODE = "versionCode";
+	static final String SETTINGS = "MinetestSettings";
+	static final String TAG_VERSION_CODE = "versionCode";
 
 	private ProgressBar mProgressBar;
 	private TextView mTextView;
 	private SharedPreferences sharedPreferences;
-
-	private final BroadcastReceiver myReceiver = new BroadcastReceiver() {
-		@Override
-		public void onReceive(Context context, Intent intent) {
-			int progress = 0;
-			@StringRes int message = 0;
-			if (intent != null) {
-				progress = intent.getIntExtra(ACTION_PROGRESS, 0);
-				message = intent.getIntExtra(ACTION_PROGRESS_MESSAGE, 0);
-			}
-
-			if (progress == FAILURE) {
-				Toast.makeText(MainActivity.this, intent.getStringExtra(ACTION_FAILURE), Toast.LENGTH_LONG).show();
-				finish();
-			} else if (progress == SUCCESS) {
-				startNative();
-			} else {
-				if (mProgressBar != null) {
-					mProgressBar.setVisibility(View.VISIBLE);
-					if (progress == INDETERMINATE) {
-						mProgressBar.setIndeterminate(true);
-					} else {
-						mProgressBar.setIndeterminate(false);
-						mProgressBar.setProgress(progress);
-					}
+	private boolean nativeStarted = false;
+	private static boolean libraryPreloadStarted = false;
+
+	private final UnzipService.ProgressListener progressListener = (progress, message, failureMessage) -> {
+		if (progress == FAILURE) {
+			Toast.makeText(MainActivity.this, failureMessage, Toast.LENGTH_LONG).show();
+			finish();
+		} else if (progress == SUCCESS || progress == READY) {
+			startNative();
+		} else {
+			if (mProgressBar != null) {
+				mProgressBar.setVisibility(View.VISIBLE);
+				if (progress == INDETERMINATE) {
+					mProgressBar.setIndeterminate(true);
+				} else {
+					mProgressBar.setIndeterminate(false);
+					mProgressBar.setProgress(progress);
 				}
-				mTextView.setVisibility(View.VISIBLE);
-				if (message != 0)
-					mTextView.setText(message);
 			}
+			mTextView.setVisibility(View.VISIBLE);
+			if (message != 0)
+				mTextView.setText(message);
 		}
 	};
 
-	@SuppressLint("UnspecifiedRegisterReceiverFlag")
 	@Override
 	public void onCreate(Bundle savedInstanceState) {
+		StartupTrace.begin("MainActivity.onCreate");
 		super.onCreate(savedInstanceState);
+		// GameActivity posts its notification on this channel
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O)
+			createNotificationChannel(this);
+
+		// Launches with installed assets do not get here, see LauncherActivity
 		setContentView(R.layout.activity_main);
 
-		IntentFilter filter = new IntentFilter(ACTION_UPDATE);
-		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
-			registerReceiver(myReceiver, filter, RECEIVER_NOT_EXPORTED);
-		} else {
-			registerReceiver(myReceiver, filter);
-		}
+		preloadNativeLibrary();
+		UnzipService.setProgressListener(progressListener);
 
 		mProgressBar = findViewById(R.id.progressBar);
 		mTextView = findViewById(R.id.textView);
 		sharedPreferences = getSharedPreferences(SETTINGS, Context.MODE_PRIVATE);
 
 		checkAppVersion();
-
-		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O)
-			createNotificationChannel();
+		StartupTrace.end("MainActivity.onCreate");
 	}
 
 	private void checkAppVersion() {
+		StartupTrace.mark("checkAppVersion");
+		// onCreate() has handled current installs already
 		if (UnzipService.getIsRunning()) {
 			mProgressBar.setVisibility(View.VISIBLE);
 			mProgressBar.setIndeterminate(true);
 			mTextView.setVisibility(View.VISIBLE);
-		} else if (sharedPreferences.getInt(TAG_VERSION_CODE, 0) == versionCode &&
-				Utils.isInstallValid(this)) {
-			startNative();
 		} else {
 			mProgressBar.setVisibility(View.VISIBLE);
 			mProgressBar.setIndeterminate(true);
 			mTextView.setVisibility(View.VISIBLE);
 
-			Intent intent = new Intent(this, UnzipService.class);
-			startService(intent);
+			// Installs from before the fingerprint existed are checked the slow
+			// way, off the UI thread, since it touches external storage
+			new Thread(() -> {
+				StartupTrace.begin("install check");
+				boolean valid = sharedPreferences.getInt(TAG_VERSION_CODE, 0) == versionCode &&
+					Utils.isInstallValid(this);
+				StartupTrace.end("install check");
+				if (valid)
+					writeFingerprint();
+				runOnUiThread(valid ? this::startNative : this::startInstall);
+			}, "Install check").start();
 		}
 	}
 
+	private void writeFingerprint() {
+		try (AssetArchive archive = AssetArchive.open(this, "assets.zip")) {
+			InstallFingerprint.write(this, InstallFingerprint.of(archive));
+		} catch (IOException e) {
+			Log.w("MainActivity", "Cannot write the install fingerprint: " + e.getLocalizedMessage());
+		}
+	}
+
+	private void startInstall() {
+		if (isFinishing())
+			return;
+		Intent intent = new Intent(this, UnzipService.class);
+		startService(intent);
+	}
+
+	// Loading and relocating the native library takes a while, so it happens
+	// in the background while the install is checked or running.
+	// SDLActivity.loadLibraries() then finds it loaded already.
+	private void preloadNativeLibrary() {
+		if (libraryPreloadStarted)
+			return;
+		libraryPreloadStarted = true;
+		final Context appContext = getApplicationContext();
+		new Thread(() -> {
+			StartupTrace.begin("preload native library");
+			try {
+				SDL.loadLibrary(GameActivity.NATIVE_LIBRARY, appContext);
+			} catch (UnsatisfiedLinkError | SecurityException e) {
+				// SDLActivity tries again and reports the error
+				Log.w("MainActivity", "Cannot preload native library: " + e.getMessage());
+			} finally {
+				StartupTrace.end("preload native library");
+			}
+		}, "Native library preload").start();
+	}
+
 	private void startNative() {
-		sharedPreferences.edit().putInt(TAG_VERSION_CODE, versionCode).apply();
+		// The installer may still be running in the background, it stores the
+		// version code itself once it is done
+		if (nativeStarted)
+			return;
+		nativeStarted = true;
 		Intent intent = new Intent(this, GameActivity.class);
 		intent.setFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_CLEAR_TASK);
 		startActivity(intent);
 	}
 
 	@RequiresApi(Build.VERSION_CODES.O)
-	private void createNotificationChannel() {
-		NotificationManager notifyManager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+	static void createNotificationChannel(@NonNull Context context) {
+		NotificationManager notifyManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
 		if (notifyManager == null)
 			return;
 
 		NotificationChannel notifyChannel = new NotificationChannel(
 			NOTIFICATION_CHANNEL_ID,
-			getString(R.string.notification_channel_name),
+			context.getString(R.string.notification_channel_name),
 			NotificationManager.IMPORTANCE_LOW
 		);
-		notifyChannel.setDescription(getString(R.string.notification_channel_description));
+		notifyChannel.setDescription(context.getString(R.string.notification_channel_description));
 		// Configure the notification channel without sound set
 		notifyChannel.setSound(null, null);
 		notifyChannel.enableLights(false);
@@ -164,6 +205,6 @@ public class MainActivity extends AppCompatActivity {
 	@Override
 	protected void onDestroy() {
 		super.onDestroy();
-		unregisterReceiver(myReceiver);
+		UnzipService.removeProgressListener(progressListener);
 	}
 }
@@ -0,0 +1,58 @@
+package net.minetest.minetest;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.PerformanceHintManager;
+import android.util.Log;
+
+import androidx.annotation.RequiresApi;
+
+/**
+ * Tells Android how long frames take compared to their target, so that it
+ * raises the CPU clocks of the engine threads only as far as needed
+ * (Android Dynamic Performance Framework). Fed by porting::reportFrameTime().
+ */
+@RequiresApi(Build.VERSION_CODES.S)
+class PerformanceHintSession {
+	private static final String TAG = "PerformanceHintSession";
+
+	private final PerformanceHintManager.Session session;
+	private long targetNanos;
+
+	private PerformanceHintSession(PerformanceHintManager.Session session, long targetNanos) {
+		this.session = session;
+		this.targetNanos = targetNanos;
+	}
+
+	/**
+	 * @param threadIds Linux thread IDs of the threads that work on frames
+	 * @return the session, or null if the device does not support it
+	 */
+	static PerformanceHintSession create(Context context, int[] threadIds, long targetNanos) {
+		PerformanceHintManager manager = context.getSystemService(PerformanceHintManager.class);
+		// The update rate is -1 if hint sessions are not supported
+		if (manager == null || manager.getPreferredUpdateRateNanos() < 0)
+			return null;
+		PerformanceHintManager.Session session;
+		try {
+			session = manager.createHintSession(threadIds, targetNanos);
+		} catch (IllegalArgumentException | SecurityException e) {
+			Log.w(TAG, "Cannot create hint session: " + e.getMessage());
+			return null;
+		}
+		return session != null ? new PerformanceHintSession(session, targetNanos) : null;
+	}
+
+	void report(long actualNanos, long targetNanos) {
+		// Changes with the FPS limit, e.g. when the window loses focus
+		if (targetNanos != this.targetNanos) {
+			session.updateTargetWorkDuration(targetNanos);
+			this.targetNanos = targetNanos;
+		}
+		session.reportActualWorkDuration(actualNanos);
+	}
+
+	void close() {
+		session.close();
+	}
+}
@@ -0,0 +1,184 @@
+package net.minetest.minetest;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Timeline of the app startup, from the process start to the first frame of
+ * the main menu.
+ *
+ * Phases are timestamped on the Java and the native side (see
+ * porting::traceStartup) with the same clock, and marked with android.os.Trace
+ * so that they line up with Perfetto captures. Once the first frame has been
+ * drawn, the timeline is written to the cache directory in the Chrome trace
+ * event format, which Perfetto and chrome://tracing can open.
+ */
+public class StartupTrace {
+	private static final String TAG = "StartupTrace";
+	public static final String FILE_NAME = "startup-trace.json";
+
+	private static final class Event {
+		final String name;
+		final String type;
+		final long timeNs;
+		final int tid;
+		final String threadName;
+
+		Event(String name, String type, long timeNs) {
+			this(name, type, timeNs, Process.myTid(), Thread.currentThread().getName());
+		}
+
+		Event(String name, String type, long timeNs, int tid, String threadName) {
+			this.name = name;
+			this.type = type;
+			this.timeNs = timeNs;
+			this.tid = tid;
+			this.threadName = threadName;
+		}
+	}
+
+	private static final List<Event> events = new ArrayList<>();
+	// Begin events of the phases that have not ended yet
+	private static final List<Event> openPhases = new ArrayList<>();
+	private static boolean finished = false;
+
+	static {
+		// Close to the launcher tap on cold starts
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N)
+			add("process start", "i", Process.getStartElapsedRealtime() * 1000000L);
+	}
+
+	/**
+	 * Starts a phase. It must be ended on the same thread.
+	 */
+	public static void begin(@NonNull String name) {
+		if (add(name, "B", SystemClock.elapsedRealtimeNanos()))
+			Trace.beginSection(name);
+	}
+
+	public static void end(@NonNull String name) {
+		if (add(name, "E", SystemClock.elapsedRealtimeNanos()))
+			Trace.endSection();
+	}
+
+	/**
+	 * Records a point in time, e.g. from native code, which does not have
+	 * phases of its own.
+	 */
+	public static void mark(@NonNull String name) {
+		if (add(name, "i", SystemClock.elapsedRealtimeNanos())) {
+			Trace.beginSection(name);
+			Trace.endSection();
+		}
+	}
+
+	/**
+	 * Records the last mark and writes the timeline on a background thread.
+	 * Phases that are still running end at this point in the timeline.
+	 * Later calls to the tracer are ignored, except for the ends of those
+	 * phases, which still end their android.os.Trace sections.
+	 */
+	public static void finish(@NonNull Context context, @NonNull String name) {
+		mark(name);
+		final List<Event> timeline;
+		synchronized (events) {
+			if (finished)
+				return;
+			finished = true;
+			timeline = new ArrayList<>(events);
+			events.clear();
+			long now = SystemClock.elapsedRealtimeNanos();
+			for (Event begin : openPhases)
+				timeline.add(new Event(begin.name, "E", now, begin.tid, begin.threadName));
+		}
+
+		final File file = new File(Utils.getCacheDirectory(context), FILE_NAME);
+		new Thread(() -> {
+			Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+			try {
+				write(timeline, file);
+				long start = timeline.get(0).timeNs;
+				long end = timeline.get(timeline.size() - 1).timeNs;
+				Log.i(TAG, "Startup took " + (end - start) / 1000000 + " ms, timeline written to " + file);
+			} catch (IOException | JSONException e) {
+				Log.w(TAG, "Cannot write the startup timeline: " + e.getLocalizedMessage());
+			}
+		}, "StartupTrace").start();
+	}
+
+	private static boolean add(@NonNull String name, @NonNull String type, long timeNs) {
+		synchronized (events) {
+			boolean wasOpen = type.equals("E") && removeOpenPhase(name);
+			if (finished)
+				return wasOpen;
+			Event event = new Event(name, type, timeNs);
+			events.add(event);
+			if (type.equals("B"))
+				openPhases.add(event);
+			return true;
+		}
+	}
+
+	private static boolean removeOpenPhase(@NonNull String name) {
+		int tid = Process.myTid();
+		for (int i = openPhases.size() - 1; i >= 0; i--) {
+			Event begin = openPhases.get(i);
+			if (begin.tid == tid && begin.name.equals(name)) {
+				openPhases.remove(i);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void write(@NonNull List<Event> timeline, @NonNull File file)
+			throws IOException, JSONException {
+		int pid = Process.myPid();
+		JSONArray traceEvents = new JSONArray();
+		Set<Integer> threads = new HashSet<>();
+		for (Event event : timeline) {
+			if (threads.add(event.tid)) {
+				traceEvents.put(new JSONObject()
+					.put("name", "thread_name").put("ph", "M")
+					.put("pid", pid).put("tid", event.tid)
+					.put("args", new JSONObject().put("name", event.threadName)));
+			}
+			JSONObject json = new JSONObject()
+				.put("name", event.name).put("ph", event.type)
+				.put("ts", event.timeNs / 1000)
+				.put("pid", pid).put("tid", event.tid);
+			if (event.type.equals("i"))
+				json.put("s", "t");
+			traceEvents.put(json);
+		}
+		JSONObject root = new JSONObject()
+			.put("traceEvents", traceEvents)
+			.put("displayTimeUnit", "ms");
+
+		File tempFile = new File(file.getPath() + ".tmp");
+		try (OutputStream out = new FileOutputStream(tempFile)) {
+			out.write(root.toString().getBytes("UTF-8"));
+		}
+		if (!tempFile.renameTo(file))
+			throw new IOException("Cannot rename " + tempFile.getName());
+	}
+}
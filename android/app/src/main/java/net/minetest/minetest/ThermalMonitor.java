@@ -0,0 +1,66 @@
+package net.minetest.minetest;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+
+import androidx.annotation.RequiresApi;
+
+/**
+ * Passes the thermal status and headroom of the device to the native thermal
+ * governor (see client/thermal_governor.h). Android pushes status changes,
+ * the headroom forecast is polled.
+ */
+@RequiresApi(Build.VERSION_CODES.Q)
+class ThermalMonitor implements PowerManager.OnThermalStatusChangedListener {
+	// getThermalHeadroom() returns NaN if called more often than once a second
+	private static final long HEADROOM_INTERVAL_MS = 10000;
+	// The governor acts before the device throttles, so it looks ahead
+	private static final int HEADROOM_FORECAST_SECONDS = 10;
+
+	private final PowerManager powerManager;
+	private final Handler handler = new Handler(Looper.getMainLooper());
+	private final Runnable pollHeadroom = this::pollHeadroom;
+
+	private int status = PowerManager.THERMAL_STATUS_NONE;
+	private float headroom = Float.NaN;
+
+	ThermalMonitor(Context context) {
+		powerManager = context.getSystemService(PowerManager.class);
+	}
+
+	/** Starts listening, the current status is sent right away. */
+	void start() {
+		if (powerManager == null)
+			return;
+		powerManager.addThermalStatusListener(this);
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R)
+			handler.post(pollHeadroom);
+	}
+
+	void stop() {
+		if (powerManager == null)
+			return;
+		powerManager.removeThermalStatusListener(this);
+		handler.removeCallbacks(pollHeadroom);
+	}
+
+	@Override
+	public void onThermalStatusChanged(int status) {
+		this.status = status;
+		send();
+	}
+
+	@RequiresApi(Build.VERSION_CODES.R)
+	private void pollHeadroom() {
+		headroom = powerManager.getThermalHeadroom(HEADROOM_FORECAST_SECONDS);
+		send();
+		handler.postDelayed(pollHeadroom, HEADROOM_INTERVAL_MS);
+	}
+
+	private void send() {
+		GameActivity.nativeOnThermalStateChanged(status, headroom);
+	}
+}
@@ -27,35 +27,62 @@ import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
+import androidx.annotation.MainThread;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.StringRes;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
-import java.util.zip.ZipInputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 public class UnzipService extends IntentService {
-	public static final String ACTION_UPDATE = "net.minetest.minetest.UPDATE";
-	public static final String ACTION_PROGRESS = "net.minetest.minetest.PROGRESS";
-	public static final String ACTION_PROGRESS_MESSAGE = "net.minetest.minetest.PROGRESS_MESSAGE";
-	public static final String ACTION_FAILURE = "net.minetest.minetest.FAILURE";
+	public interface ProgressListener {
+		/**
+		 * Called on the main thread.
+		 * @param progress percentage, or one of SUCCESS, FAILURE, INDETERMINATE and READY
+		 * @param failureMessage set together with FAILURE
+		 */
+		void onProgress(int progress, @StringRes int message, @Nullable String failureMessage);
+	}
+
 	public static final int SUCCESS = -1;
 	public static final int FAILURE = -2;
 	public static final int INDETERMINATE = -3;
+	public static final int READY = -4;
+	// Directories that contain nothing but installed assets
+	private static final String[] ASSET_DIRS = {
+		"builtin", "client/shaders", "fonts", "textures/base/pack", "locale"
+	};
+	// Limits the rate of notification updates and listener calls
+	private static final long PROGRESS_INTERVAL_MS = 100;
 	private NotificationManager mNotifyManager;
 	private boolean isSuccess = true;
 	private String failureMessage;
+	private int lastProgress = -1;
+	private long lastProgressTime = 0;
 
 	private static boolean isRunning = false;
+	private static boolean isReady = false;
+	private static AssetExtractor activeExtractor;
+	private static String activeRoot;
+	private static ProgressListener progressListener;
+	private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+	// The state of the running install, for listeners that register later.
+	// Only used on the main thread.
+	private static boolean hasStickyState = false;
+	private static int stickyProgress;
+	@StringRes
+	private static int stickyMessage;
 
 	public static synchronized boolean getIsRunning() {
 		return isRunning;
@@ -65,37 +92,71 @@ public class UnzipService extends IntentService {
 		isRunning = v;
 	}
 
+	/**
+	 * Delivers install progress to the listener in this process instead of
+	 * going through broadcasts.
+	 * The listener gets the state of a running install right away. Results
+	 * are not replayed, a failure that no listener saw is posted as a
+	 * notification instead.
+	 */
+	@MainThread
+	public static void setProgressListener(@Nullable ProgressListener listener) {
+		progressListener = listener;
+		if (listener != null && hasStickyState)
+			listener.onProgress(stickyProgress, stickyMessage, null);
+	}
+
+	@MainThread
+	public static void removeProgressListener(@NonNull ProgressListener listener) {
+		if (progressListener == listener)
+			progressListener = null;
+	}
+
+	/**
+	 * Whether the running install got far enough for the game to start.
+	 */
+	public static synchronized boolean getIsReady() {
+		return isReady;
+	}
+
+	private static synchronized void setIsReady(boolean v) {
+		isReady = v;
+	}
+
 	public UnzipService() {
 		super("net.minetest.minetest.UnzipService");
 	}
 
 	@Override
 	protected void onHandleIntent(Intent intent) {
+		StartupTrace.begin("UnzipService");
 		Notification.Builder notificationBuilder = createNotification();
-		final File zipFile = new File(getCacheDir(), "assets.zip");
 		try {
 			setIsRunning(true);
 			File userDataDirectory = Utils.getUserDataDirectory(this);
+			FileOperations.emptyTrash(userDataDirectory);
 
-			try (InputStream in = this.getAssets().open(zipFile.getName())) {
-				try (OutputStream out = new FileOutputStream(zipFile)) {
-					int readLen;
-					byte[] readBuffer = new byte[16384];
-					while ((readLen = in.read(readBuffer)) != -1) {
-						out.write(readBuffer, 0, readLen);
-					}
-				}
+			// Also covers the deferred pass, which runs while the game does
+			InstallJournal.LOCK.lock();
+			try (AssetArchive archive = AssetArchive.open(this, "assets.zip")) {
+				String fingerprint = InstallFingerprint.of(archive);
+				InstallFingerprint.clear(this);
+				unzip(notificationBuilder, archive, userDataDirectory, fingerprint);
+				InstallFingerprint.write(this, fingerprint);
+			} finally {
+				InstallJournal.LOCK.unlock();
 			}
 
-			unzip(notificationBuilder, zipFile, userDataDirectory);
+			// The game may be running already, so MainActivity cannot be relied on for this
+			getSharedPreferences(MainActivity.SETTINGS, Context.MODE_PRIVATE).edit()
+				.putInt(MainActivity.TAG_VERSION_CODE, BuildConfig.VERSION_CODE).apply();
 		} catch (IOException e) {
 			isSuccess = false;
 			failureMessage = e.getLocalizedMessage();
 		} finally {
 			setIsRunning(false);
-			if (!zipFile.delete()) {
-				Log.w("UnzipService", "Minetest installation ZIP cannot be deleted");
-			}
+			setIsReady(false);
+			StartupTrace.end("UnzipService");
 		}
 	}
 
@@ -134,66 +195,166 @@ public class UnzipService extends IntentService {
 		return builder;
 	}
 
-	private void unzip(Notification.Builder notificationBuilder, File zipFile, File userDataDirectory) throws IOException {
-		int per = 0;
+	private void unzip(Notification.Builder notificationBuilder, AssetArchive archive,
+			File userDataDirectory, String fingerprint) throws IOException {
+		AssetArchive.Entry manifestEntry = archive.getEntry(AssetManifest.FILE_NAME);
+		AssetManifest installed = AssetManifest.read(new File(userDataDirectory, AssetManifest.FILE_NAME));
+		AssetManifest manifest = null;
+		if (manifestEntry != null) {
+			try (InputStream in = archive.openEntry(manifestEntry)) {
+				manifest = AssetManifest.read(in);
+			}
+		}
+
+		// Only the system language and the ones installed on demand earlier are
+		// installed, LocaleInstaller adds others once they are selected
+		String language = Utils.getLanguage();
+		Set<String> languages = installed != null ? LocaleInstaller.getLanguages(installed) : new HashSet<>();
+		languages.add(language);
 
-		int size;
-		try (ZipFile zipSize = new ZipFile(zipFile)) {
-			size = zipSize.size();
+		// On upgrade, only write the files that changed and remove the ones that are gone
+		List<AssetArchive.Entry> entries = new ArrayList<>();
+		for (AssetArchive.Entry entry : archive.entries()) {
+			if (entry == manifestEntry)
+				continue;
+			if (manifest != null && LocaleInstaller.isOtherLocale(entry.name, languages))
+				continue;
+			if (installed == null || manifest == null ||
+					(!entry.isDirectory() && manifest.isChanged(entry.name, installed)))
+				entries.add(entry);
 		}
+		Log.i("UnzipService", "Installing " + entries.size() + " of " +
+			archive.entries().size() + " asset files");
 
-		int readLen;
-		byte[] readBuffer = new byte[16384];
-		try (FileInputStream fileInputStream = new FileInputStream(zipFile);
-		     ZipInputStream zipInputStream = new ZipInputStream(fileInputStream)) {
-			ZipEntry ze;
-			while ((ze = zipInputStream.getNextEntry()) != null) {
-				if (ze.isDirectory()) {
-					++per;
-					Utils.createDirs(userDataDirectory, ze.getName());
-					continue;
+		// Install what the engine needs to reach the main menu first, then let
+		// the game start while the rest is installed in the background
+		List<AssetArchive.Entry> startup = new ArrayList<>();
+		List<AssetArchive.Entry> deferred = new ArrayList<>();
+		for (AssetArchive.Entry entry : entries) {
+			if (isDeferredAsset(entry.name, language))
+				deferred.add(entry);
+			else
+				startup.add(entry);
+		}
+
+		// An interrupted install of the same archive is resumed where it stopped
+		try (InstallJournal journal = InstallJournal.open(userDataDirectory, fingerprint)) {
+			// Without a manifest the files of an older install are unknown, so
+			// its asset directories are replaced as a whole
+			if (installed == null && !journal.isResumed()) {
+				for (String dir : ASSET_DIRS) {
+					File old = new File(userDataDirectory, dir);
+					if (old.exists())
+						FileOperations.deleteInBackground(old, userDataDirectory);
 				}
-				publishProgress(notificationBuilder, R.string.loading, 100 * ++per / size);
-				try (OutputStream outputStream = new FileOutputStream(
-						new File(userDataDirectory, ze.getName()))) {
-					while ((readLen = zipInputStream.read(readBuffer)) != -1) {
-						outputStream.write(readBuffer, 0, readLen);
-					}
+			}
+
+			AssetExtractor extractor = new AssetExtractor(archive, userDataDirectory, journal,
+				entries, (done, total) -> publishExtractProgress(notificationBuilder, done, total));
+			setActiveExtractor(extractor, userDataDirectory);
+			try {
+				extractor.extract(startup);
+				setIsReady(true);
+				StartupTrace.mark("startup assets installed");
+				publishProgress(null, R.string.loading, READY);
+				extractor.extract(deferred);
+			} finally {
+				setActiveExtractor(null, null);
+			}
+
+			if (manifest != null && installed != null) {
+				for (String path : manifest.getRemoved(installed))
+					deleteAsset(userDataDirectory, path);
+			}
+
+			// Written last, so that an interrupted upgrade is redone next time.
+			// It only lists what has been installed.
+			if (manifest != null) {
+				AssetManifest result = new AssetManifest();
+				for (String path : manifest.getPaths()) {
+					if (!LocaleInstaller.isOtherLocale(path, languages))
+						result.copy(manifest, path);
 				}
+				result.write(journal, userDataDirectory);
 			}
+			journal.commit();
 		}
+		// Interrupted locale installs and repairs are retried against the new
+		// tree when they are needed again
+		InstallJournal.discardAll(userDataDirectory);
+	}
+
+	// Assets that are not needed to reach the main menu. The engine waits for
+	// them with waitForAsset() if it gets to them before the installer does.
+	private static boolean isDeferredAsset(@NonNull String name, @NonNull String language) {
+		if (name.startsWith("locale/"))
+			return !LocaleInstaller.isLocaleOf(name, language);
+		if (name.startsWith("fonts/"))
+			return !name.endsWith("-Regular.ttf");
+		return name.startsWith("textures/");
 	}
 
-	void moveFileOrDir(@NonNull File src, @NonNull File dst) throws IOException {
+	/**
+	 * Blocks until the asset at the given absolute path has been installed,
+	 * if the installer is still running.
+	 * @return false if no install is in progress
+	 */
+	public static boolean waitForAsset(@NonNull String path) {
+		AssetExtractor extractor;
+		String root;
+		synchronized (UnzipService.class) {
+			extractor = activeExtractor;
+			root = activeRoot;
+		}
+		if (extractor == null)
+			return false;
+		if (!path.startsWith(root))
+			return true;
+
 		try {
-			Process p = new ProcessBuilder("/system/bin/mv",
-				src.getAbsolutePath(), dst.getAbsolutePath()).start();
-			int exitCode = p.waitFor();
-			if (exitCode != 0)
-				throw new IOException("Move failed with exit code " + exitCode);
+			extractor.waitFor(path.substring(root.length()));
+		} catch (IOException e) {
+			Log.e("UnzipService", "Cannot install " + path + ": " + e.getLocalizedMessage());
 		} catch (InterruptedException e) {
-			throw new IOException("Move operation interrupted");
+			Thread.currentThread().interrupt();
 		}
+		return true;
 	}
 
-	boolean recursivelyDeleteDirectory(@NonNull File loc) {
-		try {
-			Process p = new ProcessBuilder("/system/bin/rm", "-rf",
-				loc.getAbsolutePath()).start();
-			return p.waitFor() == 0;
-		} catch (IOException | InterruptedException e) {
-			return false;
+	private static synchronized void setActiveExtractor(@Nullable AssetExtractor extractor,
+			@Nullable File root) {
+		activeExtractor = extractor;
+		activeRoot = root == null ? null : root.getAbsolutePath() + File.separator;
+	}
+
+	private static void deleteAsset(File userDataDirectory, String path) {
+		File file = new File(userDataDirectory, path);
+		if (!file.delete() && file.exists()) {
+			Log.w("UnzipService", "Outdated asset " + path + " cannot be deleted");
+			return;
 		}
+		// Prune directories that became empty
+		File parent = file.getParentFile();
+		while (parent != null && !parent.equals(userDataDirectory) && parent.delete())
+			parent = parent.getParentFile();
+	}
+
+	// Called concurrently by the extraction workers
+	private synchronized void publishExtractProgress(Notification.Builder notificationBuilder,
+			long done, long total) {
+		int progress = (int) (100 * done / total);
+		long now = SystemClock.uptimeMillis();
+		if (progress <= lastProgress ||
+				(done < total && now - lastProgressTime < PROGRESS_INTERVAL_MS))
+			return;
+		lastProgress = progress;
+		lastProgressTime = now;
+		publishProgress(notificationBuilder, R.string.loading, progress);
 	}
 
 	private void publishProgress(@Nullable Notification.Builder notificationBuilder, @StringRes int message, int progress) {
-		Intent intentUpdate = new Intent(ACTION_UPDATE);
-		intentUpdate.setPackage(getPackageName());
-		intentUpdate.putExtra(ACTION_PROGRESS, progress);
-		intentUpdate.putExtra(ACTION_PROGRESS_MESSAGE, message);
-		if (!isSuccess)
-			intentUpdate.putExtra(ACTION_FAILURE, failureMessage);
-		sendBroadcast(intentUpdate);
+		final String failure = isSuccess ? null : failureMessage;
+		mainHandler.post(() -> deliverProgress(progress, message, failure));
 
 		if (notificationBuilder != null) {
 			notificationBuilder.setContentText(getString(message));
@@ -206,10 +367,34 @@ public class UnzipService extends IntentService {
 		}
 	}
 
+	@MainThread
+	private static void deliverProgress(int progress, @StringRes int message, @Nullable String failure) {
+		// A result would tell a later MainActivity about an install that is over
+		hasStickyState = progress != SUCCESS && progress != FAILURE;
+		stickyProgress = progress;
+		stickyMessage = message;
+		if (progressListener != null)
+			progressListener.onProgress(progress, message, failure);
+	}
+
 	@Override
 	public void onDestroy() {
 		super.onDestroy();
 		mNotifyManager.cancel(MainActivity.NOTIFICATION_ID_UNZIP);
+		// Runs on the main thread, like the listener calls
+		if (!isSuccess && progressListener == null)
+			notifyFailure();
 		publishProgress(null, R.string.loading, isSuccess ? SUCCESS : FAILURE);
 	}
+
+	// Tells about a failed install that no activity is around to show
+	private void notifyFailure() {
+		Notification.Builder builder = createNotification();
+		builder.setContentTitle(getString(R.string.unzip_failed_title))
+				.setContentText(failureMessage)
+				.setOngoing(false)
+				.setAutoCancel(true)
+				.setProgress(0, 0, false);
+		mNotifyManager.notify(MainActivity.NOTIFICATION_ID_UNZIP, builder.build());
+	}
 }
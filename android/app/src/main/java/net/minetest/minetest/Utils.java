@@ -5,6 +5,7 @@ import android.util.Log;
 
 import androidx.annotation.NonNull;
 import java.io.File;
+import java.util.Locale;
 import java.util.Objects;
 
 public class Utils {
@@ -38,8 +39,34 @@ public class Utils {
 	public static boolean isInstallValid(@NonNull Context context) {
 		File userDataDirectory = getUserDataDirectory(context);
 		return userDataDirectory.isDirectory() &&
+			!InstallJournal.isPending(userDataDirectory) &&
 			new File(userDataDirectory, "builtin").isDirectory() &&
 			new File(userDataDirectory, "client").isDirectory() &&
 			new File(userDataDirectory, "textures").isDirectory();
 	}
+
+	@NonNull
+	public static String getLanguage() {
+		String langCode = Locale.getDefault().getLanguage();
+
+		// getLanguage() still uses old language codes to preserve compatibility.
+		// List of code changes in ISO 639-2:
+		// https://www.loc.gov/standards/iso639-2/php/code_changes.php
+		switch (langCode) {
+			case "in":
+				langCode = "id"; // Indonesian
+				break;
+			case "iw":
+				langCode = "he"; // Hebrew
+				break;
+			case "ji":
+				langCode = "yi"; // Yiddish
+				break;
+			case "jw":
+				langCode = "jv"; // Javanese
+				break;
+		}
+
+		return langCode;
+	}
 }
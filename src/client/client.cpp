@@ -549,32 +549,7 @@ void Client::step(float dtime)
 			mapblock_limit, &deleted_blocks);
 
 		// Send info to server
-
-		auto i = deleted_blocks.begin();
-		std::vector<v3s16> sendlist;
-		for(;;) {
-			if(sendlist.size() == 255 || i == deleted_blocks.end()) {
-				if(sendlist.empty())
-					break;
-				/*
-					[0] u16 command
-					[2] u8 count
-					[3] v3s16 pos_0
-					[3+6] v3s16 pos_1
-					...
-				*/
-
-				sendDeletedBlocks(sendlist);
-
-				if(i == deleted_blocks.end())
-					break;
-
-				sendlist.clear();
-			}
-
-			sendlist.push_back(*i);
-			++i;
-		}
+		sendDeletedBlockList(deleted_blocks);
 	}
 
 	/*
@@ -1295,6 +1270,56 @@ void Client::sendDeletedBlocks(std::vector<v3s16> &blocks)
 	Send(&pkt);
 }
 
+void Client::setMeshThrottleInterval(u16 ms)
+{
+	m_mesh_update_manager->setThrottleInterval(ms);
+}
+
+void Client::sendDeletedBlockList(const std::vector<v3s16> &deleted_blocks)
+{
+	auto i = deleted_blocks.begin();
+	std::vector<v3s16> sendlist;
+	for(;;) {
+		if(sendlist.size() == 255 || i == deleted_blocks.end()) {
+			if(sendlist.empty())
+				break;
+			/*
+				[0] u16 command
+				[2] u8 count
+				[3] v3s16 pos_0
+				[3+6] v3s16 pos_1
+				...
+			*/
+
+			sendDeletedBlocks(sendlist);
+
+			if(i == deleted_blocks.end())
+				break;
+
+			sendlist.clear();
+		}
+
+		sendlist.push_back(*i);
+		++i;
+	}
+}
+
+u32 Client::unloadFarBlocks(s16 range)
+{
+	LocalPlayer *player = m_env.getLocalPlayer();
+	if (!player)
+		return 0;
+
+	std::vector<v3s16> deleted_blocks;
+	v3s16 center = getNodeBlockPos(floatToInt(player->getPosition(), BS));
+	m_env.getClientMap().unloadFarBlocks(center,
+		range / MAP_BLOCKSIZE + 1, &deleted_blocks);
+
+	// The server sends them again when the player gets close
+	sendDeletedBlockList(deleted_blocks);
+	return deleted_blocks.size();
+}
+
 void Client::sendGotBlocks(const std::vector<v3s16> &blocks)
 {
 	NetworkPacket pkt(TOSERVER_GOTBLOCKS, 1 + 6 * blocks.size());
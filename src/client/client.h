@@ -146,6 +146,13 @@ class Client : public con::PeerHandler, public InventoryManager, public IGameDef
 	*/
 	void step(float dtime);
 
+	// Unloads the map blocks farther than range nodes from the player, to
+	// release memory. Returns how many were unloaded.
+	u32 unloadFarBlocks(s16 range);
+
+	// Slows down mesh generation, see MeshUpdateManager::setThrottleInterval()
+	void setMeshThrottleInterval(u16 ms);
+
 	/*
 	 * Command Handlers
 	 */
@@ -460,6 +467,8 @@ class Client : public con::PeerHandler, public InventoryManager, public IGameDef
 	void sendInit(const std::string &playerName);
 	void startAuth(AuthMechanism chosen_auth_mechanism);
 	void sendDeletedBlocks(std::vector<v3s16> &blocks);
+	// Splits the list into packets as needed
+	void sendDeletedBlockList(const std::vector<v3s16> &deleted_blocks);
 	void sendGotBlocks(const std::vector<v3s16> &blocks);
 	void sendRemovedSounds(const std::vector<s32> &soundList);
 
@@ -310,6 +310,9 @@ void ClientLauncher::init_engine()
 	receiver = new MyEventReceiver();
 	// Note: this can throw
 	m_rendering_engine = new RenderingEngine(receiver);
+#ifdef __ANDROID__
+	porting::traceStartup("rendering engine created");
+#endif
 }
 
 void ClientLauncher::init_input()
@@ -375,6 +375,38 @@ void ClientMap::clearDrawList()
 	m_needs_update_drawlist = true;
 }
 
+void ClientMap::unloadFarBlocks(v3s16 center, s16 range,
+		std::vector<v3s16> *unloaded_blocks)
+{
+	const s32 range_sq = (s32)range * range;
+	std::vector<v2s16> sector_deletion_queue;
+	MapBlockVect blocks;
+	for (auto &sector_it : m_sectors) {
+		MapSector *sector = sector_it.second;
+		blocks.clear();
+		sector->getBlocks(blocks);
+
+		for (MapBlock *block : blocks) {
+			// Blocks in the draw lists are referenced
+			if (block->refGet() != 0)
+				continue;
+			v3s16 p = block->getPos();
+			v3s32 d(p.X - center.X, p.Y - center.Y, p.Z - center.Z);
+			if (d.X * d.X + d.Y * d.Y + d.Z * d.Z <= range_sq)
+				continue;
+
+			sector->deleteBlock(block);
+			if (unloaded_blocks)
+				unloaded_blocks->push_back(p);
+		}
+
+		if (sector->empty())
+			sector_deletion_queue.push_back(sector_it.first);
+	}
+
+	deleteSectors(sector_deletion_queue);
+}
+
 void ClientMap::updateDrawList()
 {
 	ScopeProfiler sp(g_profiler, "CM::updateDrawList()", SPT_AVG);
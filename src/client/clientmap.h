@@ -96,6 +96,9 @@ class ClientMap : public Map, public scene::ISceneNode
 	/// @brief clears m_drawlist and m_keeplist
 	void clearDrawList();
 
+	/// @brief unloads the unused blocks that are more than range blocks from center
+	void unloadFarBlocks(v3s16 center, s16 range, std::vector<v3s16> *unloaded_blocks);
+
 	/// @brief Calculate statistics about the map and keep the blocks alive
 	void touchMapBlocks();
 
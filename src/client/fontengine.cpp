@@ -10,6 +10,7 @@
 #include "util/numeric.h" // rangelim
 #include "exceptions.h"
 #include "gettext.h"
+#include "porting.h"
 #include <IGUIEnvironment.h>
 #include <IGUIFont.h>
 
@@ -229,6 +230,10 @@ gui::SGUITTFace *FontEngine::getOrLoadFace(const std::string &filename)
 	if (it != m_local_faces.end())
 		return it->second.get();
 
+#ifdef __ANDROID__
+	// Most fonts are installed in the background
+	porting::waitForAsset(filename);
+#endif
 	irr_ptr<gui::SGUITTFace> face(gui::SGUITTFace::loadFace(filename));
 	if (!face)
 		return nullptr;
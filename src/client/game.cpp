@@ -6,6 +6,8 @@
 
 #include <cmath>
 #include <csignal>
+#include <ctime>
+#include <fstream>
 #include "client/gameui.h"
 #include "client/inputhandler.h"
 #include "client/texturepaths.h"
@@ -19,6 +21,7 @@
 #include "content_cao.h"
 #include "content/subgames.h"
 #include "client/event_manager.h"
+#include "filesys.h"
 #include "fontengine.h"
 #include "itemdef.h"
 #include "gameparams.h"
@@ -526,6 +529,11 @@ void Game::run()
 
 		g_fontengine->handleReload();
 
+#ifdef __ANDROID__
+		handleAndroidTrimMemory();
+		updateThermalGovernor(draw_times, dtime);
+#endif
+
 		const auto current_dynamic_info = ClientDynamicInfo::getCurrent();
 		if (!current_dynamic_info.equal(client_display_info)) {
 			client_display_info = current_dynamic_info;
@@ -1615,16 +1623,76 @@ void Game::openConsole(float scale, const wchar_t *line)
 #ifdef __ANDROID__
 void Game::handleAndroidChatInput()
 {
+	if (!m_android_chat_open)
+		return;
+	// Still shown if there is no result yet
+	auto result = porting::takeInputDialogResult();
+	if (!result)
+		return;
+	m_android_chat_open = false;
+
 	// It has to be a text input
-	if (m_android_chat_open && porting::getLastInputDialogType() == porting::TEXT_INPUT) {
-		porting::AndroidDialogState dialogState = porting::getInputDialogState();
-		if (dialogState == porting::DIALOG_INPUTTED) {
-			std::string text = porting::getInputDialogMessage();
-			client->typeChatMessage(utf8_to_wide(text));
-		}
-		if (dialogState != porting::DIALOG_SHOWN)
-			m_android_chat_open = false;
+	if (result->type == porting::TEXT_INPUT && result->state == porting::DIALOG_INPUTTED)
+		client->typeChatMessage(utf8_to_wide(result->text));
+}
+#endif
+
+#ifdef __ANDROID__
+void Game::handleAndroidTrimMemory()
+{
+	const auto stage = porting::takeTrimMemoryStage();
+	if (stage == porting::TrimMemoryStage::NONE)
+		return;
+	const size_t resident_before = porting::getResidentMemory();
+
+	u32 mesh_count = m_rendering_engine->releaseMemory(
+			stage == porting::TrimMemoryStage::ALL);
+	u32 block_count = 0;
+	if (stage >= porting::TrimMemoryStage::FAR_DATA) {
+		// Blocks beyond the wanted range are not sent again by the server
+		// until the player moves towards them
+		block_count = client->unloadFarBlocks(draw_control->wanted_range);
 	}
+
+	const size_t resident_after = porting::getResidentMemory();
+	actionstream << "Released memory for trim stage " << (int)stage << ": "
+		<< mesh_count << " cached meshes, " << block_count << " map blocks"
+		<< (stage == porting::TrimMemoryStage::ALL ? ", GPU buffers" : "")
+		<< "; resident " << resident_before / (1024 * 1024) << " MiB -> "
+		<< resident_after / (1024 * 1024) << " MiB" << std::endl;
+}
+#endif
+
+#ifdef __ANDROID__
+void Game::updateThermalGovernor(FpsControl &draw_times, f32 dtime)
+{
+	ThermalState state;
+	state.status = porting::getThermalStatus();
+	state.headroom = porting::getThermalHeadroom();
+	if (!m_thermal_governor.update(state, dtime))
+		return;
+
+	const auto &params = m_thermal_governor.getParams();
+	draw_times.fps_cap = params.fps_cap;
+	client->setMeshThrottleInterval(params.mesh_interval_ms);
+
+	actionstream << "Thermal governor: step " << m_thermal_governor.getStep()
+		<< " (status " << state.status << ", headroom " << state.headroom
+		<< "): viewing range x" << params.range_scale << ", FPS cap "
+		<< params.fps_cap << ", mesh interval +" << params.mesh_interval_ms
+		<< " ms" << std::endl;
+
+	// Holds this session and the one before it, for analysis
+	const std::string record_path = porting::path_cache + DIR_DELIM "thermal_governor.csv";
+	if (!m_thermal_record_started) {
+		m_thermal_record_started = true;
+		if (fs::PathExists(record_path))
+			fs::Rename(record_path, record_path + ".old");
+	}
+	std::ofstream record(record_path, std::ios::app);
+	if (record.tellp() == 0)
+		record << "time,old_step,new_step,status,headroom,reason\n";
+	m_thermal_governor.writeRecord(record, std::time(nullptr));
 }
 #endif
 
@@ -3390,6 +3458,10 @@ void Game::updateFrame(ProfilerGraph *graph, RunStats *stats, f32 dtime,
 	if (sky->getFogDistance() >= 0) {
 		draw_control->wanted_range = MYMIN(draw_control->wanted_range, sky->getFogDistance());
 	}
+#ifdef __ANDROID__
+	// Camera::updateViewingRange() resets it every frame
+	draw_control->wanted_range *= m_thermal_governor.getParams().range_scale;
+#endif
 	if (draw_control->range_all && sky->getFogDistance() < 0) {
 		runData.fog_range = FOG_RANGE_ALL;
 	} else {
@@ -14,6 +14,7 @@
 #include "client/clientevent.h"
 #include "client/game_formspec.h"
 #include "client/renderingengine.h"
+#include "client/thermal_governor.h"
 #include "clientdynamicinfo.h"
 #include "clouds.h"
 #include "gui/touchcontrols.h"
@@ -244,6 +245,8 @@ class Game {
 
 #ifdef __ANDROID__
 	void handleAndroidChatInput();
+	void handleAndroidTrimMemory();
+	void updateThermalGovernor(FpsControl &draw_times, f32 dtime);
 #endif
 
 private:
@@ -383,6 +386,9 @@ class Game {
 	bool isTouchShootlineUsed() const;
 #ifdef __ANDROID__
 	bool m_android_chat_open;
+	ThermalGovernor m_thermal_governor;
+	// The record of the previous session is rotated out on the first write
+	bool m_thermal_record_started = false;
 #endif
 
 	float m_shutdown_progress = 0.0f;
@@ -264,8 +264,9 @@ void MeshUpdateWorkerThread::doUpdate()
 
 		// do this after we're done so the interval is enforced without
 		// adding extra latency.
-		if (m_generation_interval)
-			sleep_ms(m_generation_interval);
+		int interval = m_generation_interval + m_manager->getThrottleInterval();
+		if (interval)
+			sleep_ms(interval);
 	}
 }
 
@@ -4,6 +4,7 @@
 
 #pragma once
 
+#include <atomic>
 #include <ctime>
 #include <mutex>
 #include <unordered_set>
@@ -158,9 +159,16 @@ class MeshUpdateManager
 
 	bool isRunning();
 
+	// Makes the worker threads pause for this long after each mesh, on top of
+	// mesh_generation_interval
+	void setThrottleInterval(u16 ms) { m_throttle_interval = ms; }
+	u16 getThrottleInterval() const { return m_throttle_interval; }
+
 private:
 	void deferUpdate();
 
+	std::atomic<u16> m_throttle_interval{0};
+
 
 	MeshUpdateQueue m_queue_in;
 	MutexedQueue<MeshUpdateResult> m_queue_out;
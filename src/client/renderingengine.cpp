@@ -37,9 +37,11 @@ void FpsControl::reset()
 
 void FpsControl::limit(IrrlichtDevice *device, f32 *dtime)
 {
-	const float fps_limit = device->isWindowFocused()
+	float fps_limit = device->isWindowFocused()
 			? g_settings->getFloat("fps_max")
 			: g_settings->getFloat("fps_max_unfocused");
+	if (fps_cap > 0.0f)
+		fps_limit = std::min(fps_limit, fps_cap);
 	const u64 frametime_min = 1000000.0f / std::max(fps_limit, 1.0f);
 
 	u64 time = porting::getTimeUs();
@@ -49,6 +51,10 @@ void FpsControl::limit(IrrlichtDevice *device, f32 *dtime)
 	else
 		busy_time = 0;
 
+#ifdef __ANDROID__
+	porting::reportFrameTime(busy_time * 1000, frametime_min * 1000);
+#endif
+
 	if (busy_time < frametime_min) {
 		sleep_time = frametime_min - busy_time;
 		porting::preciseSleepUs(sleep_time);
@@ -272,6 +278,17 @@ void RenderingEngine::cleanupMeshCache()
 	mesh_cache->clear();
 }
 
+u32 RenderingEngine::releaseMemory(bool hardware_buffers)
+{
+	auto mesh_cache = m_device->getSceneManager()->getMeshCache();
+	u32 mesh_count = mesh_cache->getMeshCount();
+	mesh_cache->clear();
+	// They are uploaded again when drawn next
+	if (hardware_buffers)
+		driver->removeAllHardwareBuffers();
+	return mesh_count;
+}
+
 bool RenderingEngine::setupTopLevelWindow()
 {
 	return setWindowIcon();
@@ -370,6 +387,14 @@ void RenderingEngine::draw_load_screen(const std::wstring &text,
 	guienv->drawAll();
 	driver->endScene();
 	guitext->remove();
+
+#ifdef __ANDROID__
+	static bool first_frame = true;
+	if (first_frame) {
+		first_frame = false;
+		porting::traceStartup("first frame");
+	}
+#endif
 }
 
 std::vector<video::E_DRIVER_TYPE> RenderingEngine::getSupportedVideoDrivers()
@@ -48,6 +48,9 @@ struct FpsControl {
 
 	// all values in microseconds (us)
 	u64 last_time, busy_time, sleep_time;
+
+	// Lowers fps_max further if > 0
+	f32 fps_cap = 0.0f;
 };
 
 // Populates fogColor, fogDistance, fogShadingParameter with values from Irrlicht
@@ -81,6 +84,9 @@ class RenderingEngine
 	bool setupTopLevelWindow();
 	bool setWindowIcon();
 	void cleanupMeshCache();
+	// Empties the mesh cache, and also drops the GPU copies of all meshes if
+	// hardware_buffers is set. Returns how many meshes were cached.
+	u32 releaseMemory(bool hardware_buffers);
 
 	void removeMesh(const scene::IMesh* mesh);
 
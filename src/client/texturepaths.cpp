@@ -40,6 +40,10 @@ std::string getImagePath(std::string_view path)
 			break;
 		std::string extended_path(stripped_path);
 		extended_path.append(ext);
+#ifdef __ANDROID__
+		// Base textures may still be installed in the background
+		porting::waitForAsset(extended_path);
+#endif
 		if (fs::PathExists(extended_path))
 			return extended_path;
 	}
@@ -0,0 +1,73 @@
+// Luanti
+// SPDX-License-Identifier: LGPL-2.1-or-later
+
+#include "thermal_governor.h"
+
+static const ThermalGovernor::Step STEPS[ThermalGovernor::STEP_COUNT] = {
+	{1.0f, 0.0f, 0},
+	{0.8f, 45.0f, 5},
+	{0.6f, 30.0f, 10},
+	{0.4f, 24.0f, 20},
+};
+
+// PowerManager.THERMAL_STATUS_*
+enum {
+	THERMAL_STATUS_LIGHT = 1,
+	THERMAL_STATUS_MODERATE = 2,
+	THERMAL_STATUS_SEVERE = 3,
+};
+
+bool ThermalGovernor::update(const ThermalState &state, f32 dtime)
+{
+	m_time_since_change += dtime;
+
+	// Once the device throttles, go to the matching step right away
+	u32 min_step = 0;
+	if (state.status >= THERMAL_STATUS_SEVERE)
+		min_step = 3;
+	else if (state.status >= THERMAL_STATUS_MODERATE)
+		min_step = 2;
+	else if (state.status >= THERMAL_STATUS_LIGHT)
+		min_step = 1;
+
+	const bool has_headroom = !std::isnan(state.headroom);
+	if (min_step > m_step) {
+		setStep(min_step, state, "status");
+		return true;
+	}
+	if (has_headroom && state.headroom >= HEADROOM_HIGH &&
+			m_step + 1 < STEP_COUNT && m_time_since_change >= STEP_DOWN_DELAY) {
+		setStep(m_step + 1, state, "headroom high");
+		return true;
+	}
+	// Without a forecast only the status is known
+	if ((!has_headroom || state.headroom < HEADROOM_LOW) &&
+			m_step > min_step && m_time_since_change >= STEP_UP_DELAY) {
+		setStep(m_step - 1, state, has_headroom ? "headroom low" : "status");
+		return true;
+	}
+	return false;
+}
+
+const ThermalGovernor::Step &ThermalGovernor::getParams() const
+{
+	return STEPS[m_step];
+}
+
+void ThermalGovernor::setStep(u32 step, const ThermalState &state, const char *reason)
+{
+	m_last_step = m_step;
+	m_step = step;
+	m_last_state = state;
+	m_reason = reason;
+	m_time_since_change = 0.0f;
+}
+
+void ThermalGovernor::writeRecord(std::ostream &os, u64 time) const
+{
+	os << time << ',' << m_last_step << ',' << m_step << ','
+		<< m_last_state.status << ',';
+	if (!std::isnan(m_last_state.headroom))
+		os << m_last_state.headroom;
+	os << ',' << m_reason << '\n';
+}
@@ -0,0 +1,76 @@
+// Luanti
+// SPDX-License-Identifier: LGPL-2.1-or-later
+
+#pragma once
+
+#include "irrlichttypes.h"
+#include <cmath>
+#include <ostream>
+#include <string>
+
+/*
+	Thermal state as reported by Android's PowerManager
+*/
+struct ThermalState
+{
+	// PowerManager.THERMAL_STATUS_*, from 0 (none) to 6 (shutdown)
+	int status = 0;
+	// Forecast of PowerManager.getThermalHeadroom(). At 1.0 the device starts
+	// to throttle. NaN if the device does not report it.
+	f32 headroom = NAN;
+};
+
+/*
+	Lowers the rendering load in steps as the device heats up, so that it does
+	not get throttled, and raises it again once there is headroom.
+	Each step reduces the viewing range, the FPS limit and the mesh
+	generation rate further.
+*/
+class ThermalGovernor
+{
+public:
+	struct Step
+	{
+		// Multiplies the wanted viewing range
+		f32 range_scale;
+		// Upper limit of fps_max, 0 for none
+		f32 fps_cap;
+		// Added to mesh_generation_interval
+		u16 mesh_interval_ms;
+	};
+
+	static constexpr u32 STEP_COUNT = 4;
+
+	// The load is lowered before this headroom is reached...
+	static constexpr f32 HEADROOM_HIGH = 0.85f;
+	// ...and raised again below this one
+	static constexpr f32 HEADROOM_LOW = 0.65f;
+	// Seconds between two steps down, so each one can take effect
+	static constexpr f32 STEP_DOWN_DELAY = 10.0f;
+	// Seconds to wait until a step up, to avoid oscillating
+	static constexpr f32 STEP_UP_DELAY = 60.0f;
+
+	/*
+		Feeds the current state, returns true if the step has changed.
+		dtime: seconds since the last call
+	*/
+	bool update(const ThermalState &state, f32 dtime);
+
+	// 0 is the full load
+	u32 getStep() const { return m_step; }
+	const Step &getParams() const;
+
+	// Writes the last change as a CSV line: time, old and new step,
+	// thermal status, headroom and the reason
+	void writeRecord(std::ostream &os, u64 time) const;
+
+private:
+	void setStep(u32 step, const ThermalState &state, const char *reason);
+
+	u32 m_step = 0;
+	u32 m_last_step = 0;
+	ThermalState m_last_state;
+	std::string m_reason;
+	// Seconds since the step has changed
+	f32 m_time_since_change = 0.0f;
+};
@@ -49,9 +49,27 @@
 #define LAST_OS_ERROR() strerror(errno)
 #endif
 
+#ifdef __ANDROID__
+#include "util/asset_pack.h"
+#endif
+
 namespace fs
 {
 
+#ifdef __ANDROID__
+// Files below path_share that are read in place from the APK
+static std::optional<std::string_view> findPackedAsset(const std::string &path)
+{
+	const AssetPack *pack = porting::getAssetPack();
+	const std::string &share = porting::path_share;
+	if (!pack || share.empty() || path.size() <= share.size() ||
+			path.compare(0, share.size(), share) != 0 ||
+			path[share.size()] != DIR_DELIM_CHAR)
+		return std::nullopt;
+	return pack->find(path.substr(share.size() + 1));
+}
+#endif
+
 #ifdef _WIN32
 
 /***********
@@ -327,6 +345,10 @@ bool CreateDir(const std::string &path)
 
 bool PathExists(const std::string &path)
 {
+#ifdef __ANDROID__
+	if (findPackedAsset(path))
+		return true;
+#endif
 	return access(path.c_str(), F_OK) == 0;
 }
 
@@ -1047,6 +1069,12 @@ bool extractZipFile(io::IFileSystem *fs, const char *filename, const std::string
 
 bool ReadFile(const std::string &path, std::string &out, bool log_error)
 {
+#ifdef __ANDROID__
+	if (auto packed = findPackedAsset(path)) {
+		out.assign(packed->data(), packed->size());
+		return true;
+	}
+#endif
 	auto is = open_ifstream(path.c_str(), log_error, std::ios::ate);
 	if (!is.good())
 		return false;
@@ -382,6 +382,9 @@ void GUIEngine::run()
 			}
 
 			driver->endScene();
+#ifdef __ANDROID__
+			porting::traceStartup("first menu frame", true);
+#endif
 		}
 
 		m_script->step();
@@ -391,6 +394,15 @@ void GUIEngine::run()
 
 #ifdef __ANDROID__
 		m_menu->getAndroidUIInput();
+
+		// The menu has no map data, only caches to release
+		const auto trim_stage = porting::takeTrimMemoryStage();
+		if (trim_stage != porting::TrimMemoryStage::NONE) {
+			u32 mesh_count = m_rendering_engine->releaseMemory(
+					trim_stage == porting::TrimMemoryStage::ALL);
+			actionstream << "Released memory for trim stage " << (int)trim_stage
+				<< ": " << mesh_count << " cached meshes" << std::endl;
+		}
 #endif
 	}
 	framemarker.end();
@@ -3371,18 +3371,12 @@ void GUIFormSpecMenu::legacySortElements(std::list<IGUIElement *>::iterator from
 #ifdef __ANDROID__
 void GUIFormSpecMenu::getAndroidUIInput()
 {
-	porting::AndroidDialogState dialogState = getAndroidUIInputState();
-	if (dialogState == porting::DIALOG_SHOWN) {
-		return;
-	} else if (dialogState == porting::DIALOG_CANCELED) {
-		m_jni_field_name.clear();
+	std::string fieldname = m_jni_field_name;
+	auto result = takeAndroidUIInput();
+	if (!result || result->state != porting::DIALOG_INPUTTED)
 		return;
-	}
 
-	porting::AndroidDialogType dialog_type = porting::getLastInputDialogType();
-
-	std::string fieldname = m_jni_field_name;
-	m_jni_field_name.clear();
+	porting::AndroidDialogType dialog_type = result->type;
 
 	for (const FieldSpec &field : m_fields) {
 		if (field.fname != fieldname)
@@ -3396,8 +3390,7 @@ void GUIFormSpecMenu::getAndroidUIInput()
 		auto element_type = element->getType();
 		if (dialog_type == porting::TEXT_INPUT && element_type == gui::EGUIET_EDIT_BOX) {
 			gui::IGUIEditBox *editbox = (gui::IGUIEditBox *)element;
-			std::string text = porting::getInputDialogMessage();
-			editbox->setText(utf8_to_wide(text).c_str());
+			editbox->setText(utf8_to_wide(result->text).c_str());
 
 			bool enter_after_edit = false;
 			auto iter = field_enter_after_edit.find(fieldname);
@@ -3415,8 +3408,7 @@ void GUIFormSpecMenu::getAndroidUIInput()
 		} else if (dialog_type == porting::SELECTION_INPUT &&
 				element_type == gui::EGUIET_COMBO_BOX) {
 			auto dropdown = (gui::IGUIComboBox *) element;
-			int selected = porting::getInputDialogSelection();
-			dropdown->setAndSendSelected(selected);
+			dropdown->setAndSendSelected(result->selection);
 		}
 
 		return; // Early-return after found
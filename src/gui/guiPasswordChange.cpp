@@ -252,32 +252,27 @@ std::string GUIPasswordChange::getNameByID(s32 id)
 #ifdef __ANDROID__
 void GUIPasswordChange::getAndroidUIInput()
 {
-	porting::AndroidDialogState dialogState = getAndroidUIInputState();
-	if (dialogState == porting::DIALOG_SHOWN) {
+	std::string fieldname = m_jni_field_name;
+	auto result = takeAndroidUIInput();
+	if (!result || result->state != porting::DIALOG_INPUTTED)
 		return;
-	} else if (dialogState == porting::DIALOG_CANCELED) {
-		m_jni_field_name.clear();
-		return;
-	}
 
 	// It has to be a text input
-	if (porting::getLastInputDialogType() != porting::TEXT_INPUT)
+	if (result->type != porting::TEXT_INPUT)
 		return;
 
 	gui::IGUIElement *e = nullptr;
-	if (m_jni_field_name == "old_password")
+	if (fieldname == "old_password")
 		e = getElementFromId(ID_oldPassword);
-	else if (m_jni_field_name == "new_password_1")
+	else if (fieldname == "new_password_1")
 		e = getElementFromId(ID_newPassword1);
-	else if (m_jni_field_name == "new_password_2")
+	else if (fieldname == "new_password_2")
 		e = getElementFromId(ID_newPassword2);
-	m_jni_field_name.clear();
 
 	if (!e || e->getType() != gui::EGUIET_EDIT_BOX)
 		return;
 
-	std::string text = porting::getInputDialogMessage();
-	e->setText(utf8_to_wide(text).c_str());
+	e->setText(utf8_to_wide(result->text).c_str());
 	return;
 }
 #endif
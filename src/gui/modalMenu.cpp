@@ -367,13 +367,17 @@ bool GUIModalMenu::preprocessEvent(const SEvent &event)
 }
 
 #ifdef __ANDROID__
-porting::AndroidDialogState GUIModalMenu::getAndroidUIInputState()
+std::optional<porting::AndroidDialogResult> GUIModalMenu::takeAndroidUIInput()
 {
 	// No dialog is shown
 	if (m_jni_field_name.empty())
-		return porting::DIALOG_CANCELED;
+		return std::nullopt;
 
-	return porting::getInputDialogState();
+	// Still shown if there is no result yet
+	auto result = porting::takeInputDialogResult();
+	if (result)
+		m_jni_field_name.clear();
+	return result;
 }
 #endif
 
@@ -52,7 +52,7 @@ class GUIModalMenu : public gui::IGUIElement
 	virtual bool pausesGame() { return false; } // Used for pause menu
 #ifdef __ANDROID__
 	virtual void getAndroidUIInput() {};
-	porting::AndroidDialogState getAndroidUIInputState();
+	std::optional<porting::AndroidDialogResult> takeAndroidUIInput();
 #endif
 
 protected:
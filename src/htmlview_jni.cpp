@@ -5,7 +5,7 @@
 
 #include "htmlview_jni.h"
 
-#include "log.h"
+#include "porting_android_jni.h"
 
 #include <jni.h>
 #define SDL_MAIN_HANDLED 1
@@ -25,98 +25,51 @@ static std::string readJavaString(JNIEnv *env, jstring j_str)
 	return str;
 }
 
-static bool getActivityEnv(JNIEnv **out_env, jobject *out_activity, jclass *out_activity_class)
+// Method IDs are looked up once on startup, see porting::ActivityMethods.
+// These may be called from the server thread, so they use its own JNIEnv.
+static void callVoidMethod2Str(jmethodID method, const std::string &a, const std::string &b)
 {
 	JNIEnv *env = (JNIEnv *)SDL_AndroidGetJNIEnv();
 	if (!env)
-		return false;
-	jobject activity = (jobject)SDL_AndroidGetActivity();
-	if (!activity)
-		return false;
-	jclass activityClass = env->GetObjectClass(activity);
-	if (!activityClass)
-		return false;
-	*out_env = env;
-	*out_activity = activity;
-	*out_activity_class = activityClass;
-	return true;
-}
-
-static void callVoidMethod2Str(const char *method_name, const std::string &a, const std::string &b)
-{
-	JNIEnv *env;
-	jobject activity;
-	jclass activityClass;
-	if (!getActivityEnv(&env, &activity, &activityClass))
 		return;
 
-	jmethodID mid = env->GetMethodID(activityClass, method_name,
-		"(Ljava/lang/String;Ljava/lang/String;)V");
-	if (!mid) {
-		errorstream << "htmlview_jni: missing method " << method_name << std::endl;
-		env->DeleteLocalRef(activityClass);
-		return;
-	}
-
 	jstring ja = env->NewStringUTF(a.c_str());
 	jstring jb = env->NewStringUTF(b.c_str());
-	env->CallVoidMethod(activity, mid, ja, jb);
+	env->CallVoidMethod(porting::activity, method, ja, jb);
 	if (ja)
 		env->DeleteLocalRef(ja);
 	if (jb)
 		env->DeleteLocalRef(jb);
-	env->DeleteLocalRef(activityClass);
 }
 
-static void callVoidMethod1Str(const char *method_name, const std::string &a)
+static void callVoidMethod1Str(jmethodID method, const std::string &a)
 {
-	JNIEnv *env;
-	jobject activity;
-	jclass activityClass;
-	if (!getActivityEnv(&env, &activity, &activityClass))
-		return;
-
-	jmethodID mid = env->GetMethodID(activityClass, method_name,
-		"(Ljava/lang/String;)V");
-	if (!mid) {
-		errorstream << "htmlview_jni: missing method " << method_name << std::endl;
-		env->DeleteLocalRef(activityClass);
+	JNIEnv *env = (JNIEnv *)SDL_AndroidGetJNIEnv();
+	if (!env)
 		return;
-	}
 
 	jstring ja = env->NewStringUTF(a.c_str());
-	env->CallVoidMethod(activity, mid, ja);
+	env->CallVoidMethod(porting::activity, method, ja);
 	if (ja)
 		env->DeleteLocalRef(ja);
-	env->DeleteLocalRef(activityClass);
 }
 
 void htmlview_jni_run(const std::string &id, const std::string &html)
 {
-	callVoidMethod2Str("htmlview_run", id, html);
+	callVoidMethod2Str(porting::activityMethods.htmlviewRun, id, html);
 }
 
 void htmlview_jni_stop(const std::string &id)
 {
-	callVoidMethod1Str("htmlview_stop", id);
+	callVoidMethod1Str(porting::activityMethods.htmlviewStop, id);
 }
 
 void htmlview_jni_display(const std::string &id, int x, int y, int w, int h,
 		bool visible, bool fullscreen, bool safe_area)
 {
-	JNIEnv *env;
-	jobject activity;
-	jclass activityClass;
-	if (!getActivityEnv(&env, &activity, &activityClass))
-		return;
-
-	jmethodID mid = env->GetMethodID(activityClass, "htmlview_display",
-		"(Ljava/lang/String;IIIIZZZ)V");
-	if (!mid) {
-		errorstream << "htmlview_jni: missing method htmlview_display" << std::endl;
-		env->DeleteLocalRef(activityClass);
+	JNIEnv *env = (JNIEnv *)SDL_AndroidGetJNIEnv();
+	if (!env)
 		return;
-	}
 
 	jstring jid = env->NewStringUTF(id.c_str());
 	jint jx = x;
@@ -126,16 +79,16 @@ void htmlview_jni_display(const std::string &id, int x, int y, int w, int h,
 	jboolean jvis = visible;
 	jboolean jfull = fullscreen;
 	jboolean jsafe = safe_area;
-	
-	env->CallVoidMethod(activity, mid, jid, jx, jy, jw, jh, jvis, jfull, jsafe);
+
+	env->CallVoidMethod(porting::activity, porting::activityMethods.htmlviewDisplay,
+		jid, jx, jy, jw, jh, jvis, jfull, jsafe);
 	if (jid)
 		env->DeleteLocalRef(jid);
-	env->DeleteLocalRef(activityClass);
 }
 
 void htmlview_jni_send(const std::string &id, const std::string &message)
 {
-	callVoidMethod2Str("htmlview_send", id, message);
+	callVoidMethod2Str(porting::activityMethods.htmlviewSend, id, message);
 }
 
 struct HtmlViewMessage {
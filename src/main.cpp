@@ -134,6 +134,9 @@ int main(int argc, char *argv[])
 	g_logger.addOutputMaxLevel(&stderr_output, LL_ACTION);
 
 	porting::osSpecificInit();
+#ifdef __ANDROID__
+	porting::traceStartup("native main");
+#endif
 
 	Settings cmd_args;
 	get_env_opts(cmd_args);
@@ -759,6 +762,16 @@ static bool init_common(const Settings &cmd_args, int argc, char *argv[])
 	// Initialize HTTP fetcher
 	httpfetch_init(g_settings->getS32("curl_parallel_limit"));
 
+#ifdef __ANDROID__
+	// Only the system language is installed with the other assets. Others
+	// are installed when selected, to be used after the required restart.
+	porting::installLocale(g_settings->get("language"));
+	g_settings->registerChangedCallback("language",
+		[](const std::string &name, void *) {
+			porting::installLocale(g_settings->get(name));
+		});
+#endif
+
 	init_gettext(porting::path_locale.c_str(),
 		g_settings->get("language"), argc, argv);
 
@@ -9,19 +9,33 @@
 #include "util/numeric.h"
 #include "porting.h"
 #include "porting_android.h"
+#include "porting_android_jni.h"
 #include "threading/thread.h"
 #include "config.h"
 #include "filesys.h"
 #include "log.h"
 #include "settings.h"
+#include "util/asset_pack.h"
+#include "util/string.h"
 
 #include <jni.h>
+#include <android/asset_manager.h>
+#include <android/asset_manager_jni.h>
 #define SDL_MAIN_HANDLED 1
 #include <SDL.h>
 
+#include <atomic>
+#include <chrono>
+#include <cmath>
+#include <condition_variable>
+#include <deque>
+#include <fstream>
+#include <mutex>
+#include <thread>
 #include <sstream>
 #include <exception>
 #include <cstdlib>
+#include <unistd.h>
 
 #ifdef GPROF
 #include "prof.h"
@@ -29,10 +43,98 @@
 
 extern int main(int argc, char *argv[]);
 
+// Saves g_settings on a thread of its own, so that GameActivity.onStop() does
+// not wait for the storage, which may be slow.
+// Unchanged settings are not written at all.
+class SettingsSaver {
+public:
+	// Returns right away
+	void request()
+	{
+		std::lock_guard<std::mutex> lock(m_mutex);
+		if (m_shutdown)
+			return;
+		m_requested++;
+		if (!m_thread.joinable())
+			m_thread = std::thread(&SettingsSaver::run, this);
+		m_cv.notify_all();
+	}
+
+	// Returns false if the saves requested so far are not done in time
+	bool wait(std::chrono::milliseconds timeout)
+	{
+		std::unique_lock<std::mutex> lock(m_mutex);
+		u64 target = m_requested;
+		return m_cv.wait_for(lock, timeout, [&] { return m_done >= target || m_shutdown; });
+	}
+
+	// Drops pending saves and waits for a running one to finish.
+	// Must be called before exit() destroys g_settings.
+	void shutdown()
+	{
+		{
+			std::lock_guard<std::mutex> lock(m_mutex);
+			m_shutdown = true;
+			m_cv.notify_all();
+		}
+		if (m_thread.joinable())
+			m_thread.join();
+	}
+
+private:
+	void run()
+	{
+		Thread::setName("SettingsSaver");
+		std::unique_lock<std::mutex> lock(m_mutex);
+		while (true) {
+			m_cv.wait(lock, [this] { return m_done < m_requested || m_shutdown; });
+			if (m_shutdown)
+				return;
+			// Requests that came in meanwhile are covered by the same save
+			u64 target = m_requested;
+			lock.unlock();
+			save();
+			lock.lock();
+			m_done = target;
+			m_cv.notify_all();
+		}
+	}
+
+	void save()
+	{
+		if (g_settings_path.empty())
+			return;
+		u64 change_count = g_settings->getChangeCount();
+		if (change_count == m_saved_change_count)
+			return;
+		// Written to a temporary file that replaces the old one
+		if (g_settings->updateConfigFile(g_settings_path.c_str()))
+			m_saved_change_count = change_count;
+		else
+			errorstream << "Failed to save settings to " << g_settings_path << std::endl;
+	}
+
+	std::mutex m_mutex;
+	std::condition_variable m_cv;
+	std::thread m_thread;
+	bool m_shutdown = false;
+	u64 m_requested = 0;
+	u64 m_done = 0;
+	// Only used by the thread
+	u64 m_saved_change_count = U64_MAX;
+};
+
+static SettingsSaver settingsSaver;
+
 extern "C" JNIEXPORT void JNICALL
 Java_net_minetest_minetest_GameActivity_saveSettings(JNIEnv* env, jobject /* this */) {
-	if (!g_settings_path.empty())
-		g_settings->updateConfigFile(g_settings_path.c_str());
+	settingsSaver.request();
+}
+
+extern "C" JNIEXPORT jboolean JNICALL
+Java_net_minetest_minetest_GameActivity_waitForSettingsSaved(JNIEnv* env, jobject /* this */,
+		jint timeout_ms) {
+	return settingsSaver.wait(std::chrono::milliseconds(timeout_ms));
 }
 
 namespace porting {
@@ -52,6 +154,12 @@ extern "C" int SDL_Main(int _argc, char *_argv[])
 	free(argv[1]);
 
 	porting::cleanupAndroid();
+	// A save that exit() cuts short is lost, so pending saves get some time.
+	// exit() then destroys g_settings, which the saver thread must not use
+	// anymore.
+	if (!settingsSaver.wait(std::chrono::seconds(2)))
+		warningstream << "Settings are still being saved" << std::endl;
+	settingsSaver.shutdown();
 	infostream << "Shutting down." << std::endl;
 	exit(retval);
 }
@@ -60,12 +168,111 @@ namespace porting {
 JNIEnv      *jnienv = nullptr;
 jobject      activity;
 jclass       activityClass;
+jclass       stringClass;
+
+ActivityMethods activityMethods;
+
+static std::mutex displayConfigMutex;
+static DisplayConfig displayConfig;
+
+static std::mutex dialogResultsMutex;
+static std::deque<AndroidDialogResult> dialogResults;
+
+// Highest TrimMemoryStage requested since takeTrimMemoryStage() was called
+static std::atomic<int> trimMemoryStage((int)TrimMemoryStage::NONE);
+
+static std::atomic<int> thermalStatus(0);
+static std::atomic<float> thermalHeadroom(NAN);
+
+static jobject   assetManagerRef;
+static AAsset   *assetPackAsset = nullptr;
+static AssetPack assetPack;
+
+// Maps assets.pack from the APK, see AssetPack
+static void openAssetPack()
+{
+	jobject local_manager = jnienv->CallObjectMethod(activity, activityMethods.getAssets);
+	// The native AAssetManager is only valid while the Java object is alive
+	assetManagerRef = jnienv->NewGlobalRef(local_manager);
+	jnienv->DeleteLocalRef(local_manager);
+
+	AAssetManager *manager = AAssetManager_fromJava(jnienv, assetManagerRef);
+	assetPackAsset = AAssetManager_open(manager, "assets.pack", AASSET_MODE_BUFFER);
+	if (!assetPackAsset) {
+		infostream << "No asset pack, all assets are extracted" << std::endl;
+		return;
+	}
+	// The pack is stored uncompressed, so this maps it instead of inflating it
+	const void *data = AAsset_getBuffer(assetPackAsset);
+	if (!data || !assetPack.load(data, AAsset_getLength64(assetPackAsset))) {
+		errorstream << "Cannot read the asset pack" << std::endl;
+		AAsset_close(assetPackAsset);
+		assetPackAsset = nullptr;
+	}
+}
+
+const AssetPack *getAssetPack()
+{
+	return assetPack.empty() ? nullptr : &assetPack;
+}
+
+static jmethodID getActivityMethod(const char *name, const char *signature)
+{
+	jmethodID method = jnienv->GetMethodID(activityClass, name, signature);
+	if (!method) {
+		jnienv->ExceptionClear();
+		std::string msg = std::string("porting: GameActivity has no method ") +
+				name + signature;
+		FATAL_ERROR(msg.c_str());
+	}
+	return method;
+}
+
+static void initActivityMethods()
+{
+	ActivityMethods &m = activityMethods;
+	m.getAssets = getActivityMethod("getAssets", "()Landroid/content/res/AssetManager;");
+	m.getUserDataPath = getActivityMethod("getUserDataPath", "()Ljava/lang/String;");
+	m.getCachePath = getActivityMethod("getCachePath", "()Ljava/lang/String;");
+	m.getLanguage = getActivityMethod("getLanguage", "()Ljava/lang/String;");
+	m.showTextInputDialog = getActivityMethod("showTextInputDialog",
+			"(Ljava/lang/String;Ljava/lang/String;I)V");
+	m.showSelectionInputDialog = getActivityMethod("showSelectionInputDialog",
+			"([Ljava/lang/String;I)V");
+	m.openURI = getActivityMethod("openURI", "(Ljava/lang/String;)V");
+	m.shareFile = getActivityMethod("shareFile", "(Ljava/lang/String;)V");
+	m.setPlayingNowNotification = getActivityMethod("setPlayingNowNotification", "(Z)V");
+	m.waitForAsset = getActivityMethod("waitForAsset", "(Ljava/lang/String;)Z");
+	m.installLocale = getActivityMethod("installLocale", "(Ljava/lang/String;)Z");
+	m.traceStartup = getActivityMethod("traceStartup", "(Ljava/lang/String;Z)V");
+	m.createPerformanceHintSession = getActivityMethod("createPerformanceHintSession", "([IJ)Z");
+	m.reportFrameDuration = getActivityMethod("reportFrameDuration", "(JJ)V");
+	m.htmlviewRun = getActivityMethod("htmlview_run",
+			"(Ljava/lang/String;Ljava/lang/String;)V");
+	m.htmlviewStop = getActivityMethod("htmlview_stop", "(Ljava/lang/String;)V");
+	m.htmlviewDisplay = getActivityMethod("htmlview_display",
+			"(Ljava/lang/String;IIIIZZZ)V");
+	m.htmlviewSend = getActivityMethod("htmlview_send",
+			"(Ljava/lang/String;Ljava/lang/String;)V");
+
+	jclass local_string = jnienv->FindClass("java/lang/String");
+	stringClass = (jclass)jnienv->NewGlobalRef(local_string);
+	jnienv->DeleteLocalRef(local_string);
+}
 
 void osSpecificInit()
 {
 	jnienv = (JNIEnv*)SDL_AndroidGetJNIEnv();
-	activity = (jobject)SDL_AndroidGetActivity();
-	activityClass = jnienv->GetObjectClass(activity);
+	// Global references, so that other threads may call into Java, too
+	jobject local_activity = (jobject)SDL_AndroidGetActivity();
+	activity = jnienv->NewGlobalRef(local_activity);
+	jnienv->DeleteLocalRef(local_activity);
+	jclass local_class = jnienv->GetObjectClass(activity);
+	activityClass = (jclass)jnienv->NewGlobalRef(local_class);
+	jnienv->DeleteLocalRef(local_class);
+	initActivityMethods();
+
+	openAssetPack();
 
 	// Set default language
 	auto lang = getLanguageAndroid();
@@ -103,11 +310,7 @@ bool setSystemPaths()
 {
 	// Set user and share paths
 	{
-		jmethodID getUserDataPath = jnienv->GetMethodID(activityClass,
-				"getUserDataPath", "()Ljava/lang/String;");
-		FATAL_ERROR_IF(getUserDataPath==nullptr,
-				"porting::initializePathsAndroid unable to find Java getUserDataPath method");
-		jobject result = jnienv->CallObjectMethod(activity, getUserDataPath);
+		jobject result = jnienv->CallObjectMethod(activity, activityMethods.getUserDataPath);
 		std::string str = readJavaString((jstring) result);
 		path_user = str;
 		path_share = str;
@@ -115,43 +318,36 @@ bool setSystemPaths()
 
 	// Set cache path
 	{
-		jmethodID getCachePath = jnienv->GetMethodID(activityClass,
-				"getCachePath", "()Ljava/lang/String;");
-		FATAL_ERROR_IF(getCachePath==nullptr,
-				"porting::initializePathsAndroid unable to find Java getCachePath method");
-		jobject result = jnienv->CallObjectMethod(activity, getCachePath);
+		jobject result = jnienv->CallObjectMethod(activity, activityMethods.getCachePath);
 		path_cache = readJavaString((jstring) result);
 	}
 
 	return true;
 }
 
-void showTextInputDialog(const std::string &hint, const std::string &current, int editType)
+static void clearInputDialogResults()
 {
-	jmethodID showdialog = jnienv->GetMethodID(activityClass, "showTextInputDialog",
-			"(Ljava/lang/String;Ljava/lang/String;I)V");
+	std::lock_guard<std::mutex> lock(dialogResultsMutex);
+	dialogResults.clear();
+}
 
-	FATAL_ERROR_IF(showdialog == nullptr,
-			"porting::showTextInputDialog unable to find Java showTextInputDialog method");
+void showTextInputDialog(const std::string &hint, const std::string &current, int editType)
+{
+	clearInputDialogResults();
 
 	jstring jhint         = jnienv->NewStringUTF(hint.c_str());
 	jstring jcurrent      = jnienv->NewStringUTF(current.c_str());
 	jint    jeditType     = editType;
 
-	jnienv->CallVoidMethod(activity, showdialog,
+	jnienv->CallVoidMethod(activity, activityMethods.showTextInputDialog,
 			jhint, jcurrent, jeditType);
 }
 
 void showComboBoxDialog(const std::string *optionList, s32 listSize, s32 selectedIdx)
 {
-	jmethodID showdialog = jnienv->GetMethodID(activityClass, "showSelectionInputDialog",
-			"([Ljava/lang/String;I)V");
+	clearInputDialogResults();
 
-	FATAL_ERROR_IF(showdialog == nullptr,
-			"porting::showComboBoxDialog unable to find Java showSelectionInputDialog method");
-
-	jclass       jStringClass = jnienv->FindClass("java/lang/String");
-	jobjectArray jOptionList  = jnienv->NewObjectArray(listSize, jStringClass, NULL);
+	jobjectArray jOptionList  = jnienv->NewObjectArray(listSize, stringClass, NULL);
 	jint         jselectedIdx = selectedIdx;
 
 	for (s32 i = 0; i < listSize; i ++) {
@@ -159,166 +355,246 @@ void showComboBoxDialog(const std::string *optionList, s32 listSize, s32 selecte
 				jnienv->NewStringUTF(optionList[i].c_str()));
 	}
 
-	jnienv->CallVoidMethod(activity, showdialog, jOptionList,
-			jselectedIdx);
+	jnienv->CallVoidMethod(activity, activityMethods.showSelectionInputDialog,
+			jOptionList, jselectedIdx);
 }
 
 void openURIAndroid(const char *url)
 {
-	jmethodID url_open = jnienv->GetMethodID(activityClass, "openURI",
-		"(Ljava/lang/String;)V");
-
-	FATAL_ERROR_IF(url_open == nullptr,
-		"porting::openURIAndroid unable to find Java openURI method");
-
 	jstring jurl = jnienv->NewStringUTF(url);
-	jnienv->CallVoidMethod(activity, url_open, jurl);
+	jnienv->CallVoidMethod(activity, activityMethods.openURI, jurl);
 }
 
 void shareFileAndroid(const std::string &path)
 {
-	jmethodID url_open = jnienv->GetMethodID(activityClass, "shareFile",
-			"(Ljava/lang/String;)V");
-
-	FATAL_ERROR_IF(url_open == nullptr,
-			"porting::shareFileAndroid unable to find Java shareFile method");
-
 	jstring jurl = jnienv->NewStringUTF(path.c_str());
-	jnienv->CallVoidMethod(activity, url_open, jurl);
+	jnienv->CallVoidMethod(activity, activityMethods.shareFile, jurl);
 }
 
 void setPlayingNowNotification(bool show)
 {
-	jmethodID play_notification = jnienv->GetMethodID(activityClass,
-			"setPlayingNowNotification", "(Z)V");
-
-	FATAL_ERROR_IF(play_notification == nullptr,
-			"porting::setPlayingNowNotification unable to find Java setPlayingNowNotification method");
-
 	jboolean jshow = show;
-	jnienv->CallVoidMethod(activity, play_notification, jshow);
+	jnienv->CallVoidMethod(activity, activityMethods.setPlayingNowNotification, jshow);
 }
 
-AndroidDialogType getLastInputDialogType()
+std::optional<AndroidDialogResult> takeInputDialogResult()
 {
-	jmethodID lastdialogtype = jnienv->GetMethodID(activityClass,
-			"getLastDialogType", "()I");
-
-	FATAL_ERROR_IF(lastdialogtype == nullptr,
-			"porting::getLastInputDialogType unable to find Java getLastDialogType method");
-
-	int dialogType = jnienv->CallIntMethod(activity, lastdialogtype);
-	return static_cast<AndroidDialogType>(dialogType);
+	std::lock_guard<std::mutex> lock(dialogResultsMutex);
+	if (dialogResults.empty())
+		return std::nullopt;
+	AndroidDialogResult result = std::move(dialogResults.front());
+	dialogResults.pop_front();
+	return result;
 }
 
-AndroidDialogState getInputDialogState()
+DisplayConfig getDisplayConfig()
 {
-	jmethodID inputdialogstate = jnienv->GetMethodID(activityClass,
-			"getInputDialogState", "()I");
-
-	FATAL_ERROR_IF(inputdialogstate == nullptr,
-			"porting::getInputDialogState unable to find Java getInputDialogState method");
-
-	int dialogState = jnienv->CallIntMethod(activity, inputdialogstate);
-	return static_cast<AndroidDialogState>(dialogState);
+	std::lock_guard<std::mutex> lock(displayConfigMutex);
+	return displayConfig;
 }
 
-std::string getInputDialogMessage()
+float getDisplayDensity()
 {
-	jmethodID dialogvalue = jnienv->GetMethodID(activityClass,
-			"getDialogMessage", "()Ljava/lang/String;");
+	return getDisplayConfig().density;
+}
 
-	FATAL_ERROR_IF(dialogvalue == nullptr,
-			"porting::getInputDialogMessage unable to find Java getDialogMessage method");
+v2u32 getDisplaySize()
+{
+	return getDisplayConfig().size;
+}
 
+std::string getLanguageAndroid()
+{
 	jobject result = jnienv->CallObjectMethod(activity,
-			dialogvalue);
+			activityMethods.getLanguage);
 	return readJavaString((jstring) result);
 }
 
-int getInputDialogSelection()
+bool hasPhysicalKeyboardAndroid()
 {
-	jmethodID dialogvalue = jnienv->GetMethodID(activityClass, "getDialogSelection", "()I");
+	return getDisplayConfig().has_physical_keyboard;
+}
 
-	FATAL_ERROR_IF(dialogvalue == nullptr,
-			"porting::getInputDialogSelection unable to find Java getDialogSelection method");
+// Only these directories are installed in the background,
+// see UnzipService.isDeferredAsset
+static bool isDeferredAsset(const std::string &path)
+{
+	static const char *dirs[] = {"textures", "fonts", "locale"};
+	if (!str_starts_with(path, path_share))
+		return false;
+	for (const char *dir : dirs) {
+		std::string prefix = path_share + DIR_DELIM + dir + DIR_DELIM;
+		if (str_starts_with(path, prefix))
+			return true;
+	}
+	return false;
+}
 
-	return jnienv->CallIntMethod(activity, dialogvalue);
+void waitForAsset(const std::string &path)
+{
+	// Once the installer is done this never calls into Java again
+	static std::atomic<bool> install_done(false);
+	if (install_done.load(std::memory_order_relaxed) || !isDeferredAsset(path))
+		return;
+
+	// May be called from any thread that loads textures or fonts
+	JNIEnv *env = (JNIEnv*)SDL_AndroidGetJNIEnv();
+	jstring jpath = env->NewStringUTF(path.c_str());
+	jboolean installing = env->CallBooleanMethod(activity, activityMethods.waitForAsset, jpath);
+	env->DeleteLocalRef(jpath);
+	if (!installing)
+		install_done = true;
 }
 
-float getDisplayDensity()
+void traceStartup(const char *phase, bool last)
 {
-	static bool firstrun = true;
-	static float value = 0;
+	// Once the timeline has been written this never calls into Java again
+	static std::atomic<bool> done(false);
+	if (done.load(std::memory_order_relaxed))
+		return;
+	if (last)
+		done = true;
+
+	JNIEnv *env = (JNIEnv*)SDL_AndroidGetJNIEnv();
+	jstring jphase = env->NewStringUTF(phase);
+	env->CallVoidMethod(activity, activityMethods.traceStartup, jphase, (jboolean)last);
+	env->DeleteLocalRef(jphase);
+}
 
-	if (firstrun) {
-		jmethodID getDensity = jnienv->GetMethodID(activityClass,
-				"getDensity", "()F");
+TrimMemoryStage takeTrimMemoryStage()
+{
+	return (TrimMemoryStage)trimMemoryStage.exchange((int)TrimMemoryStage::NONE);
+}
 
-		FATAL_ERROR_IF(getDensity == nullptr,
-			"porting::getDisplayDensity unable to find Java getDensity method");
+size_t getResidentMemory()
+{
+	// Second field, in pages
+	std::ifstream statm("/proc/self/statm");
+	size_t size, resident;
+	if (!(statm >> size >> resident))
+		return 0;
+	return resident * (size_t)sysconf(_SC_PAGESIZE);
+}
 
-		value = jnienv->CallFloatMethod(activity, getDensity);
-		firstrun = false;
+void reportFrameTime(u64 actual_ns, u64 target_ns)
+{
+	// Only the main thread draws frames, so it can use jnienv
+	static bool session_created = false;
+	static bool has_session = false;
+	if (!session_created) {
+		session_created = true;
+		// Rendering happens on this thread too
+		jint tid = gettid();
+		jintArray tids = jnienv->NewIntArray(1);
+		jnienv->SetIntArrayRegion(tids, 0, 1, &tid);
+		has_session = jnienv->CallBooleanMethod(activity,
+				activityMethods.createPerformanceHintSession, tids, (jlong)target_ns);
+		jnienv->DeleteLocalRef(tids);
+		infostream << "Android performance hint session "
+			<< (has_session ? "created" : "not supported") << std::endl;
 	}
+	// Android rejects durations of 0
+	if (!has_session || actual_ns == 0 || target_ns == 0)
+		return;
 
-	return value;
+	jnienv->CallVoidMethod(activity, activityMethods.reportFrameDuration,
+			(jlong)actual_ns, (jlong)target_ns);
 }
 
-v2u32 getDisplaySize()
+int getThermalStatus()
 {
-	static bool firstrun = true;
-	static v2u32 retval;
-
-	if (firstrun) {
-		jmethodID getDisplayWidth = jnienv->GetMethodID(activityClass,
-				"getDisplayWidth", "()I");
-
-		FATAL_ERROR_IF(getDisplayWidth == nullptr,
-			"porting::getDisplayWidth unable to find Java getDisplayWidth method");
+	return thermalStatus.load(std::memory_order_relaxed);
+}
 
-		retval.X = jnienv->CallIntMethod(activity,
-				getDisplayWidth);
+float getThermalHeadroom()
+{
+	return thermalHeadroom.load(std::memory_order_relaxed);
+}
 
-		jmethodID getDisplayHeight = jnienv->GetMethodID(activityClass,
-				"getDisplayHeight", "()I");
+bool installLocale(const std::string &language)
+{
+	JNIEnv *env = (JNIEnv*)SDL_AndroidGetJNIEnv();
+	jstring jlanguage = env->NewStringUTF(language.c_str());
+	jboolean installed = env->CallBooleanMethod(activity, activityMethods.installLocale, jlanguage);
+	env->DeleteLocalRef(jlanguage);
+	return installed;
+}
 
-		FATAL_ERROR_IF(getDisplayHeight == nullptr,
-			"porting::getDisplayHeight unable to find Java getDisplayHeight method");
+}
 
-		retval.Y = jnienv->CallIntMethod(activity,
-				getDisplayHeight);
+// Called on the UI thread by GameActivity.sendDisplayConfig()
+extern "C" JNIEXPORT void JNICALL
+Java_net_minetest_minetest_GameActivity_nativeOnDisplayConfigChanged(JNIEnv *env, jclass,
+		jfloat density, jint width, jint height, jint inset_left, jint inset_top,
+		jint inset_right, jint inset_bottom, jboolean has_physical_keyboard)
+{
+	porting::DisplayConfig config;
+	config.density = density;
+	config.size = v2u32(std::max(width, 0), std::max(height, 0));
+	config.inset_left = std::max(inset_left, 0);
+	config.inset_top = std::max(inset_top, 0);
+	config.inset_right = std::max(inset_right, 0);
+	config.inset_bottom = std::max(inset_bottom, 0);
+	config.has_physical_keyboard = has_physical_keyboard;
+
+	std::lock_guard<std::mutex> lock(porting::displayConfigMutex);
+	porting::displayConfig = config;
+}
 
-		firstrun = false;
+// Called on the UI thread by GameActivity.onTrimMemory() and onLowMemory()
+extern "C" JNIEXPORT void JNICALL
+Java_net_minetest_minetest_GameActivity_nativeOnTrimMemory(JNIEnv *env, jclass, jint level)
+{
+	// ComponentCallbacks2.TRIM_MEMORY_* levels. The RUNNING_* ones are sent
+	// while in the foreground, the others after the UI has been hidden.
+	constexpr jint TRIM_MEMORY_RUNNING_LOW = 10;
+	constexpr jint TRIM_MEMORY_RUNNING_CRITICAL = 15;
+	constexpr jint TRIM_MEMORY_BACKGROUND = 40;
+	constexpr jint TRIM_MEMORY_MODERATE = 60;
+
+	porting::TrimMemoryStage stage;
+	if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_CRITICAL)
+		stage = porting::TrimMemoryStage::ALL;
+	else if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_LOW)
+		stage = porting::TrimMemoryStage::FAR_DATA;
+	else
+		stage = porting::TrimMemoryStage::CACHES;
+
+	// The engine releases memory on its own thread once it gets to it, keep
+	// the highest stage until then
+	int current = porting::trimMemoryStage.load();
+	while (current < (int)stage &&
+			!porting::trimMemoryStage.compare_exchange_weak(current, (int)stage)) {
 	}
-
-	return retval;
 }
 
-std::string getLanguageAndroid()
+// Called on the UI thread by GameActivity's thermal status listener and
+// headroom polling
+extern "C" JNIEXPORT void JNICALL
+Java_net_minetest_minetest_GameActivity_nativeOnThermalStateChanged(JNIEnv *env, jclass,
+		jint status, jfloat headroom)
 {
-	jmethodID getLanguage = jnienv->GetMethodID(activityClass,
-			"getLanguage", "()Ljava/lang/String;");
-
-	FATAL_ERROR_IF(getLanguage == nullptr,
-		"porting::getLanguageAndroid unable to find Java getLanguage method");
-
-	jobject result = jnienv->CallObjectMethod(activity,
-			getLanguage);
-	return readJavaString((jstring) result);
+	porting::thermalStatus.store(status, std::memory_order_relaxed);
+	porting::thermalHeadroom.store(headroom, std::memory_order_relaxed);
 }
 
-bool hasPhysicalKeyboardAndroid()
+// Called on the UI thread when an input dialog is closed
+extern "C" JNIEXPORT void JNICALL
+Java_net_minetest_minetest_GameActivity_nativeOnDialogResult(JNIEnv *env, jclass,
+		jint type, jint state, jstring text, jint selection)
 {
-	jmethodID hasPhysicalKeyboard = jnienv->GetMethodID(activityClass,
-			"hasPhysicalKeyboard", "()Z");
-
-	FATAL_ERROR_IF(hasPhysicalKeyboard == nullptr,
-		"porting::hasPhysicalKeyboardAndroid unable to find Java hasPhysicalKeyboard method");
-
-	jboolean result = jnienv->CallBooleanMethod(activity,
-			hasPhysicalKeyboard);
-	return result;
-}
+	porting::AndroidDialogResult result;
+	result.type = static_cast<porting::AndroidDialogType>(type);
+	result.state = static_cast<porting::AndroidDialogState>(state);
+	if (text) {
+		const char *c_str = env->GetStringUTFChars(text, nullptr);
+		if (c_str) {
+			result.text = c_str;
+			env->ReleaseStringUTFChars(text, c_str);
+		}
+	}
+	result.selection = selection;
 
+	std::lock_guard<std::mutex> lock(porting::dialogResultsMutex);
+	porting::dialogResults.push_back(std::move(result));
 }
@@ -9,8 +9,11 @@
 #endif
 
 #include "irrlichttypes_bloated.h"
+#include <optional>
 #include <string>
 
+class AssetPack;
+
 namespace porting {
 /**
  * Show a text input dialog in Java
@@ -50,12 +53,6 @@ void setPlayingNowNotification(bool show);
  */
 enum AndroidDialogType { TEXT_INPUT, SELECTION_INPUT };
 
-/*
- * WORKAROUND for not working callbacks from Java -> C++
- * Get the type of the last input dialog
- */
-AndroidDialogType getLastInputDialogType();
-
 /*
  * States of Android input dialog:
  * 1. The dialog is currently shown.
@@ -65,31 +62,133 @@ AndroidDialogType getLastInputDialogType();
 enum AndroidDialogState { DIALOG_SHOWN, DIALOG_INPUTTED, DIALOG_CANCELED };
 
 /*
- * WORKAROUND for not working callbacks from Java -> C++
- * Get the state of the input dialog
+ * Result of an input dialog, pushed by Java once the dialog is closed
  */
-AndroidDialogState getInputDialogState();
+struct AndroidDialogResult {
+	AndroidDialogType type;
+	// DIALOG_INPUTTED or DIALOG_CANCELED
+	AndroidDialogState state;
+	// Entered text of TEXT_INPUT, the initial text if canceled
+	std::string text;
+	// Selected index of SELECTION_INPUT, the initial index if canceled
+	int selection;
+};
 
 /*
- * WORKAROUND for not working callbacks from Java -> C++
- * Get the text in the current/last input dialog
- * This function clears the dialog state (set to canceled). Make sure to save
- * the dialog state before calling this function.
+ * Takes the result of the input dialog that was shown last, if it has been
+ * closed since. Does not call into Java, so it may be polled every frame.
+ * Showing a new dialog discards results that have not been taken.
  */
-std::string getInputDialogMessage();
+std::optional<AndroidDialogResult> takeInputDialogResult();
+
 
 /*
- * WORKAROUND for not working callbacks from Java -> C++
- * Get the selection in the current/last input dialog
- * This function clears the dialog state (set to canceled). Make sure to save
- * the dialog state before calling this function.
+ * Display metrics and configuration. GameActivity pushes them whenever they
+ * change, e.g. on rotation or multi-window resizes.
  */
-int getInputDialogSelection();
+struct DisplayConfig {
+	float density = 1.0f;
+	v2u32 size;
+	// Insets of system bars and display cutouts in pixels
+	u32 inset_left = 0;
+	u32 inset_top = 0;
+	u32 inset_right = 0;
+	u32 inset_bottom = 0;
+	bool has_physical_keyboard = false;
+};
 
+/*
+ * Returns the current display configuration. Does not call into Java.
+ */
+DisplayConfig getDisplayConfig();
 
 bool hasPhysicalKeyboardAndroid();
 
 float getDisplayDensity();
 v2u32 getDisplaySize();
 
+/**
+ * Blocks until the asset file at path has been written, if the installer is
+ * still extracting assets in the background while the game runs.
+ * Returns right away for paths that are not part of the install.
+ *
+ * @param path absolute path below path_share. A directory waits for all files
+ * below it.
+ */
+void waitForAsset(const std::string &path);
+
+/**
+ * Makes sure that the translations of a language are installed. Only the
+ * system language is installed with the other assets, others are extracted
+ * from the APK on first use. Blocks until they are written.
+ *
+ * @param language value of the "language" setting
+ * @return false if they cannot be installed right now
+ */
+bool installLocale(const std::string &language);
+
+/**
+ * Returns the asset pack that is shipped in the APK, or nullptr if there is
+ * none. Its files are read in place from below path_share and not extracted.
+ */
+const AssetPack *getAssetPack();
+
+/**
+ * Adds a mark to the startup timeline that is recorded on the Java side
+ * (see StartupTrace.java). Marks after the last one are ignored.
+ *
+ * @param phase name of the mark
+ * @param last true for the first menu frame, which ends the timeline
+ */
+void traceStartup(const char *phase, bool last = false);
+
+/*
+ * How much memory the engine should release. Android asks for it with trim
+ * levels (ComponentCallbacks2.TRIM_MEMORY_*), which are mapped to these
+ * stages. Each stage includes the ones below it.
+ */
+enum class TrimMemoryStage {
+	NONE,
+	// Caches that are cheap to rebuild, e.g. the mesh cache
+	CACHES,
+	// Map data outside of the viewing range
+	FAR_DATA,
+	// Everything that can be restored, e.g. GPU copies of meshes
+	ALL,
+};
+
+/*
+ * Takes the highest stage that Android asked for since the last call.
+ * Does not call into Java, so it may be polled every frame.
+ */
+TrimMemoryStage takeTrimMemoryStage();
+
+/*
+ * Returns the resident set size of the process in bytes, or 0 if unknown.
+ */
+size_t getResidentMemory();
+
+/*
+ * Reports how long the last frame took to the performance hint session of
+ * Android (ADPF), so that it raises the CPU clocks only as far as needed to
+ * meet the target. The session is created on the first call.
+ * Must be called on the main thread.
+ *
+ * @param actual_ns time spent working on the frame, without the FPS limit sleep
+ * @param target_ns frame time that the FPS limit aims for
+ */
+void reportFrameTime(u64 actual_ns, u64 target_ns);
+
+/*
+ * Thermal status of the device (PowerManager.THERMAL_STATUS_*), 0 if unknown.
+ * GameActivity pushes it on change, so this does not call into Java.
+ */
+int getThermalStatus();
+
+/*
+ * Forecast thermal headroom, see PowerManager.getThermalHeadroom(). At 1.0
+ * the device starts to throttle. NaN if the device does not report it.
+ */
+float getThermalHeadroom();
+
 }
@@ -0,0 +1,48 @@
+// Luanti
+// SPDX-License-Identifier: LGPL-2.1-or-later
+
+#pragma once
+
+#ifndef __ANDROID__
+#error This header has to be included on Android port only!
+#endif
+
+#include <jni.h>
+
+namespace porting {
+
+/**
+ * Method IDs of the GameActivity methods that native code calls.
+ * They are looked up once by osSpecificInit(), which aborts if one is missing,
+ * so calls into Java need no lookups. Method IDs are valid on any thread.
+ */
+struct ActivityMethods {
+	jmethodID getAssets;
+	jmethodID getUserDataPath;
+	jmethodID getCachePath;
+	jmethodID getLanguage;
+	jmethodID showTextInputDialog;
+	jmethodID showSelectionInputDialog;
+	jmethodID openURI;
+	jmethodID shareFile;
+	jmethodID setPlayingNowNotification;
+	jmethodID waitForAsset;
+	jmethodID installLocale;
+	jmethodID traceStartup;
+	jmethodID createPerformanceHintSession;
+	jmethodID reportFrameDuration;
+	// Forwarded to HTMLViewManager
+	jmethodID htmlviewRun;
+	jmethodID htmlviewStop;
+	jmethodID htmlviewDisplay;
+	jmethodID htmlviewSend;
+};
+
+// Global references, usable from any thread that is attached to the JVM
+extern jobject activity;
+extern jclass activityClass;
+extern jclass stringClass;
+
+extern ActivityMethods activityMethods;
+
+}
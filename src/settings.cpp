@@ -132,6 +132,7 @@ Settings & Settings::operator=(const Settings &other)
 	clearNoLock();
 	m_settings = other.m_settings;
 	m_callbacks = other.m_callbacks;
+	m_change_count++;
 
 	return *this;
 }
@@ -202,6 +203,7 @@ bool Settings::readConfigFile(const char *filename)
 bool Settings::parseConfigLines(std::istream &is)
 {
 	MutexAutoLock lock(m_mutex);
+	m_change_count++;
 
 	std::string line, name, value;
 
@@ -367,13 +369,24 @@ bool Settings::updateConfigObject(std::istream &is, std::ostream &os, u32 tab_de
 
 bool Settings::updateConfigFile(const char *filename)
 {
-	MutexAutoLock lock(m_mutex);
+	// Only the merge holds m_mutex, so that slow storage does not block
+	// other threads that read or change settings meanwhile
+	MutexAutoLock file_lock(m_file_mutex);
 
-	std::ifstream is(filename);
+	std::ostringstream old_content;
+	{
+		std::ifstream file(filename);
+		if (file.good())
+			old_content << file.rdbuf();
+	}
+	std::istringstream is(old_content.str());
 	std::ostringstream os(std::ios_base::binary);
 
-	bool was_modified = updateConfigObject(is, os);
-	is.close();
+	bool was_modified;
+	{
+		MutexAutoLock lock(m_mutex);
+		was_modified = updateConfigObject(is, os);
+	}
 
 	if (!was_modified)
 		return true;
@@ -663,6 +676,14 @@ bool Settings::existsLocal(const std::string &name) const
 }
 
 
+u64 Settings::getChangeCount() const
+{
+	MutexAutoLock lock(m_mutex);
+
+	return m_change_count;
+}
+
+
 std::vector<std::string> Settings::getNames() const
 {
 	MutexAutoLock lock(m_mutex);
@@ -835,6 +856,7 @@ bool Settings::setEntry(const std::string &name, const void *data,
 
 		SettingsEntry &entry = m_settings[name];
 		old_group = entry.group;
+		m_change_count++;
 
 		entry.value    = set_group ? "" : *(const std::string *)data;
 		entry.group    = set_group ? *(Settings **)data : NULL;
@@ -970,6 +992,7 @@ bool Settings::remove(const std::string &name)
 	if (it != m_settings.end()) {
 		delete it->second.group;
 		m_settings.erase(it);
+		m_change_count++;
 		m_mutex.unlock();
 
 		doCallbacks(name);
@@ -1015,6 +1038,7 @@ void Settings::clearNoLock()
 			it != m_settings.end(); ++it)
 		delete it->second.group;
 	m_settings.clear();
+	m_change_count++;
 }
 
 
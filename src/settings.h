@@ -164,6 +164,9 @@ class Settings {
 	bool exists(const std::string &name) const;
 	// check if setting exists in this object ("locally")
 	bool existsLocal(const std::string &name) const;
+	// Increases whenever an entry of this object is set or removed. Changes
+	// made to groups in place are not counted.
+	u64 getChangeCount() const;
 
 
 	/***************************************
@@ -272,6 +275,10 @@ class Settings {
 
 	// All methods that access m_settings/m_defaults directly should lock this.
 	mutable std::mutex m_mutex;
+	u64 m_change_count = 0;
+
+	// Serializes updateConfigFile(), which does the file access without m_mutex
+	std::mutex m_file_mutex;
 
 	SettingsHierarchy *m_hierarchy = nullptr;
 	int m_settingslayer = -1;
@@ -19,6 +19,7 @@ class TestSettings : public TestBase {
 	void testAllSettings();
 	void testDefaults();
 	void testFlagDesc();
+	void testChangeCount();
 
 	static const char *config_text_before;
 	static const char *config_text_after;
@@ -31,6 +32,7 @@ void TestSettings::runTests(IGameDef *gamedef)
 	TEST(testAllSettings);
 	TEST(testDefaults);
 	TEST(testFlagDesc);
+	TEST(testChangeCount);
 }
 
 ////////////////////////////////////////////////////////////////////////////////
@@ -310,3 +312,26 @@ void TestSettings::testFlagDesc()
 
 	delete &s;
 }
+
+void TestSettings::testChangeCount()
+{
+	Settings s;
+	u64 count = s.getChangeCount();
+
+	s.set("foo", "bar");
+	UASSERT(s.getChangeCount() > count);
+	count = s.getChangeCount();
+
+	// Reading does not count
+	UASSERT(s.get("foo") == "bar");
+	UASSERT(s.existsLocal("foo"));
+	UASSERTEQ(u64, s.getChangeCount(), count);
+
+	UASSERT(s.remove("foo"));
+	UASSERT(s.getChangeCount() > count);
+	count = s.getChangeCount();
+
+	// Removing a missing entry changes nothing
+	UASSERT(!s.remove("foo"));
+	UASSERTEQ(u64, s.getChangeCount(), count);
+}
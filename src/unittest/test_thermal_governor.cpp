@@ -0,0 +1,102 @@
+// Luanti
+// SPDX-License-Identifier: LGPL-2.1-or-later
+
+#include "test.h"
+
+#include <sstream>
+#include "client/thermal_governor.h"
+
+class TestThermalGovernor : public TestBase
+{
+public:
+	TestThermalGovernor() { TestManager::registerTestModule(this); }
+	const char *getName() { return "TestThermalGovernor"; }
+
+	void runTests(IGameDef *gamedef);
+
+	void testStatus();
+	void testHeadroom();
+	void testNoHeadroom();
+	void testRecord();
+};
+
+static TestThermalGovernor g_test_instance;
+
+void TestThermalGovernor::runTests(IGameDef *gamedef)
+{
+	TEST(testStatus);
+	TEST(testHeadroom);
+	TEST(testNoHeadroom);
+	TEST(testRecord);
+}
+
+static ThermalState make_state(int status, f32 headroom)
+{
+	ThermalState state;
+	state.status = status;
+	state.headroom = headroom;
+	return state;
+}
+
+void TestThermalGovernor::testStatus()
+{
+	ThermalGovernor governor;
+	UASSERTEQ(u32, governor.getStep(), 0);
+	UASSERT(!governor.update(make_state(0, 0.5f), 1.0f));
+
+	// Throttling skips the delays
+	UASSERT(governor.update(make_state(2, 0.5f), 0.0f));
+	UASSERTEQ(u32, governor.getStep(), 2);
+	UASSERT(governor.update(make_state(3, 0.5f), 0.0f));
+	UASSERTEQ(u32, governor.getStep(), 3);
+	UASSERT(!governor.update(make_state(6, 0.5f), 0.0f));
+	UASSERTEQ(u32, governor.getStep(), ThermalGovernor::STEP_COUNT - 1);
+
+	// Does not go below what the status asks for
+	for (int i = 0; i < 10; i++)
+		governor.update(make_state(1, 0.5f), ThermalGovernor::STEP_UP_DELAY);
+	UASSERTEQ(u32, governor.getStep(), 1);
+}
+
+void TestThermalGovernor::testHeadroom()
+{
+	ThermalGovernor governor;
+	const ThermalState hot = make_state(0, 0.9f);
+
+	UASSERT(!governor.update(hot, ThermalGovernor::STEP_DOWN_DELAY / 2));
+	UASSERT(governor.update(hot, ThermalGovernor::STEP_DOWN_DELAY / 2));
+	UASSERTEQ(u32, governor.getStep(), 1);
+	UASSERT(governor.getParams().range_scale < 1.0f);
+	UASSERT(governor.getParams().fps_cap > 0.0f);
+
+	// Holds the step in between the thresholds
+	UASSERT(!governor.update(make_state(0, 0.75f), ThermalGovernor::STEP_UP_DELAY));
+	UASSERTEQ(u32, governor.getStep(), 1);
+
+	UASSERT(governor.update(make_state(0, 0.5f), 0.0f));
+	UASSERTEQ(u32, governor.getStep(), 0);
+	UASSERT(governor.getParams().range_scale == 1.0f);
+	UASSERT(governor.getParams().fps_cap == 0.0f);
+	UASSERTEQ(u16, governor.getParams().mesh_interval_ms, 0);
+}
+
+void TestThermalGovernor::testNoHeadroom()
+{
+	ThermalGovernor governor;
+	UASSERT(governor.update(make_state(1, NAN), 0.0f));
+	UASSERTEQ(u32, governor.getStep(), 1);
+
+	UASSERT(!governor.update(make_state(0, NAN), ThermalGovernor::STEP_UP_DELAY / 2));
+	UASSERT(governor.update(make_state(0, NAN), ThermalGovernor::STEP_UP_DELAY / 2));
+	UASSERTEQ(u32, governor.getStep(), 0);
+}
+
+void TestThermalGovernor::testRecord()
+{
+	ThermalGovernor governor;
+	governor.update(make_state(2, NAN), 0.0f);
+
+	std::ostringstream os;
+	governor.writeRecord(os, 1234);
+	UASSERTEQ(std::string, os.str(), "1234,0,2,2,,status\n");
+}
@@ -0,0 +1,59 @@
+// SPDX-FileCopyrightText: 2026 Luanti Contributors
+//
+// SPDX-License-Identifier: LGPL-2.1-or-later
+
+#include "asset_pack.h"
+#include "log.h"
+#include "util/serialize.h"
+#include <cstring>
+
+static const char PACK_MAGIC[8] = {'L', 'T', 'P', 'A', 'C', 'K', 0, 0};
+static const u32 PACK_VERSION = 1;
+
+bool AssetPack::load(const void *data, size_t size)
+{
+	m_files.clear();
+	const u8 *bytes = reinterpret_cast<const u8 *>(data);
+	if (size < 16 || memcmp(bytes, PACK_MAGIC, sizeof(PACK_MAGIC)) != 0) {
+		errorstream << "AssetPack: Not an asset pack" << std::endl;
+		return false;
+	}
+	if (readU32(bytes + 8) != PACK_VERSION) {
+		errorstream << "AssetPack: Unsupported version " << readU32(bytes + 8) << std::endl;
+		return false;
+	}
+
+	u32 count = readU32(bytes + 12);
+	size_t pos = 16;
+	for (u32 i = 0; i < count; i++) {
+		if (size - pos < 4)
+			goto corrupt;
+		u32 path_len = readU32(bytes + pos);
+		pos += 4;
+		if (size - pos < (size_t)path_len + 16)
+			goto corrupt;
+		std::string path(reinterpret_cast<const char *>(bytes + pos), path_len);
+		pos += path_len;
+		u64 offset = readU64(bytes + pos);
+		u64 file_size = readU64(bytes + pos + 8);
+		pos += 16;
+		if (offset > size || file_size > size - offset)
+			goto corrupt;
+		m_files.emplace(std::move(path), std::string_view(
+				reinterpret_cast<const char *>(bytes + offset), file_size));
+	}
+	return true;
+
+corrupt:
+	errorstream << "AssetPack: Table of contents is corrupt" << std::endl;
+	m_files.clear();
+	return false;
+}
+
+std::optional<std::string_view> AssetPack::find(const std::string &path) const
+{
+	auto it = m_files.find(path);
+	if (it == m_files.end())
+		return std::nullopt;
+	return it->second;
+}
@@ -0,0 +1,42 @@
+// SPDX-FileCopyrightText: 2026 Luanti Contributors
+//
+// SPDX-License-Identifier: LGPL-2.1-or-later
+
+#pragma once
+
+#include "irrlichttypes.h"
+#include <optional>
+#include <string>
+#include <string_view>
+#include <unordered_map>
+
+/**
+ * Read-only view of an asset pack, which holds files that are used in place
+ * instead of being extracted (see packAssets in android/app/build.gradle).
+ *
+ * All numbers are big-endian:
+ *   "LTPACK\0\0", u32 version (1), u32 file count,
+ *   per file: u32 path length, path (UTF-8, '/'-separated), u64 offset, u64 size
+ * followed by the file contents, each starting at a multiple of 4096 bytes.
+ */
+class AssetPack
+{
+public:
+	/**
+	 * Parses the table of contents. The data is not copied, so it has to
+	 * stay valid as long as the pack is used.
+	 * @return false if the data is not a valid pack
+	 */
+	bool load(const void *data, size_t size);
+
+	/**
+	 * @param path '/'-separated path relative to the pack root
+	 * @return contents of the file, or nothing if the pack has no such file
+	 */
+	std::optional<std::string_view> find(const std::string &path) const;
+
+	bool empty() const { return m_files.empty(); }
+
+private:
+	std::unordered_map<std::string, std::string_view> m_files;
+};
@@ -0,0 +1,29 @@
+#!/bin/bash
+# Records the classes and methods that the Android app uses during startup on a
+# connected device (Android 14 or newer) and prints them as baseline profile
+# rules, to be merged into android/app/src/main/baseline-prof.txt.
+#
+# Usage: ./android_baseline_profile.sh [seconds to wait for the main menu]
+
+set -e
+
+package=net.minetest.minetest
+wait=${1:-20}
+profile=/data/misc/profman/$package-primary.prof.txt
+
+# Start from a clean profile so only this launch is recorded
+adb shell am force-stop $package
+adb shell cmd package compile --reset $package >/dev/null
+
+adb shell am start -W -n $package/.LauncherActivity >/dev/null
+echo "Waiting $wait seconds for the app to reach the main menu..." >&2
+sleep "$wait"
+
+# Makes the runtime write the profile it has collected so far
+adb shell am broadcast -a androidx.profileinstaller.action.SAVE_PROFILE \
+	$package/androidx.profileinstaller.ProfileInstallReceiver >/dev/null
+sleep 1
+
+adb shell pm dump-profiles --dump-classes-and-methods $package >/dev/null
+adb shell cat "$profile" | tr -d '\r' |
+	grep -E '^[HSP]*L(net/minetest/minetest|org/libsdl/app)/' | sort -u